@@ -0,0 +1,183 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpServiceInfo;
+import com.example.mcpclient.model.McpToolInfo;
+import com.example.mcpclient.model.OrderData;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Message corpora and service wiring shared by the benchmarks.
+ * Services are wired by hand, without a Spring context, and MCP lookups are answered in memory
+ * so that the benchmarks measure the client's own code rather than the network.
+ */
+final class BenchmarkFixtures {
+
+    static final String[] DOMAINS = {"userCenter", "tradeCenter", "lgCenter", "userQKCenter"};
+
+    /**
+     * Chinese messages as typed by users of the chat page: order lookups with order numbers,
+     * logistics and tracking questions, account questions and small talk
+     */
+    static final String[] CHINESE_MESSAGES = {
+            "帮我查一下订单号：OD20230601001 现在是什么状态",
+            "订单 OD20230615088 已发货了吗？什么时候能到",
+            "我的订单编号是202306180023，帮我看看付款成功没有",
+            "我的快递到哪里了",
+            "包裹三天了还没到，能帮我追踪一下物流详情吗",
+            "物流一直显示运输中，帮我跟踪一下",
+            "我想修改一下收货地址，把手机号也改成新的",
+            "怎么查看我的会员等级和积分",
+            "上个月买的蓝牙耳机想退货，应该怎么操作",
+            "你好，今天有什么优惠活动吗",
+            "订单号:OD404404 找不到了，是不是被取消了",
+            "帮我看看用户12345的账户信息",
+    };
+
+    /**
+     * English messages with the same intents, including mentions of domain and tool names
+     */
+    static final String[] ENGLISH_MESSAGES = {
+            "What is the status of my order OD20230601001?",
+            "Has order OD20230615088 been shipped yet, and when will it arrive?",
+            "Can you check whether the payment for my last order went through?",
+            "Where is my package? It has been in transit for three days",
+            "Please look up the logistics tracking details for my parcel",
+            "I want to update the shipping address and phone number on my account",
+            "Use getUserById to show the profile of user 12345",
+            "Which tradeCenter tools can list all orders for a user?",
+            "How do I return the bluetooth headphones I bought last month?",
+            "Hello, are there any discounts available today?",
+            "Show me the membership level and reward points of my account",
+            "Can lgCenter estimate the delivery date for a shipment to Shanghai?",
+    };
+
+    private static final String[][] TOOL_TEMPLATES = {
+            {"getOrderWithLogisticsByOrderNo", "Query order details together with logistics information by order number"},
+            {"getOrdersWithLogisticsByUserId", "List all orders of a user with their logistics status"},
+            {"getUserById", "Get user profile information such as username, phone and address by user ID"},
+            {"updateUserAddress", "Update the default shipping address of a user"},
+            {"getLogisticsTrack", "Get the tracking history of a shipment by tracking number, 查询物流轨迹"},
+            {"estimateDeliveryTime", "Estimate the delivery time of a shipment based on its route"},
+            {"getMemberLevel", "Get the membership level and reward points of a user, 查询会员等级"},
+            {"createRefundRequest", "Create a refund request for an order item that was returned"},
+            {"listPromotions", "List currently active promotions and coupons"},
+            {"getPaymentStatus", "Query the payment status of an order"},
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Messages of the given language, "zh" or "en"
+     */
+    static String[] messages(String language) {
+        return "zh".equals(language) ? CHINESE_MESSAGES : ENGLISH_MESSAGES;
+    }
+
+    /**
+     * An ObjectMapper configured like the one Spring Boot provides to the application
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * A discovery service holding the given number of tools, spread over the four domains
+     */
+    @SuppressWarnings("unchecked")
+    static McpServiceDiscoveryService discoveryService(int toolCount) {
+        McpServiceDiscoveryService discoveryService = new McpServiceDiscoveryService();
+        ReflectionTestUtils.setField(discoveryService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(discoveryService, "observationRegistry", ObservationRegistry.NOOP);
+
+        Map<String, McpServiceInfo> services =
+                (Map<String, McpServiceInfo>) ReflectionTestUtils.getField(discoveryService, "mcpServices");
+        for (String domain : DOMAINS) {
+            McpServiceInfo service = new McpServiceInfo();
+            service.setServiceName(domain + "-mcp");
+            service.setDomain(domain);
+            service.setProtocol("MCP");
+            service.setMcpVersion("v1alpha1");
+            services.put(service.getServiceName(), service);
+        }
+
+        for (int i = 0; i < toolCount; i++) {
+            String domain = DOMAINS[i % DOMAINS.length];
+
+            McpToolInfo tool = new McpToolInfo();
+            tool.setName(toolName(i));
+            tool.setDescription(TOOL_TEMPLATES[i % TOOL_TEMPLATES.length][1]);
+            tool.setServiceName(domain + "-mcp");
+            tool.setDomain(domain);
+            tool.setInputSchema("{\"type\":\"object\",\"properties\":{\"id\":{\"type\":\"string\"}}}");
+            services.get(domain + "-mcp").getTools().add(tool);
+        }
+        return discoveryService;
+    }
+
+    /**
+     * Tool names to look up: well-known tools, generated tools and a miss
+     */
+    static List<String> toolNames(int toolCount) {
+        return List.of("getOrderWithLogisticsByOrderNo", "getUserById", toolName(toolCount - 1), "noSuchTool");
+    }
+
+    /**
+     * Name of the i-th generated tool; the first round keeps the real names so that lookups of well-known tools hit
+     */
+    private static String toolName(int i) {
+        String name = TOOL_TEMPLATES[i % TOOL_TEMPLATES.length][0];
+        return i < TOOL_TEMPLATES.length ? name : name + "V" + i;
+    }
+
+    /**
+     * A card service whose MCP lookups return fixed order and user data
+     */
+    static MessageCardService messageCardService(ObjectMapper objectMapper) {
+        OrderData orderData = new OrderData();
+        orderData.setId(10001L);
+        orderData.setOrderNo("OD20230601001");
+        orderData.setUserId(12345L);
+        orderData.setStatus(2);
+        orderData.setCreatedAt(TextNode.valueOf("2023-06-01 12:34:56"));
+        orderData.setAmount(1498.0);
+        orderData.setAddress("上海市浦东新区张江路88号");
+        orderData.setItemId(1001L);
+        orderData.setQuantity(2);
+
+        ObjectNode userData = objectMapper.createObjectNode();
+        userData.put("id", 12345L);
+        userData.put("username", "张三");
+        userData.put("phone", "13812345678");
+
+        OrderDataService orderDataService = new OrderDataService() {
+            @Override
+            public OrderData getOrderDataByOrderNo(String orderNo) {
+                return orderData;
+            }
+        };
+        UserDataService userDataService = new UserDataService() {
+            @Override
+            public JsonNode getUserById(Long userId) {
+                return userData;
+            }
+        };
+
+        MessageCardService messageCardService = new MessageCardService();
+        ReflectionTestUtils.setField(messageCardService, "orderDataService", orderDataService);
+        ReflectionTestUtils.setField(messageCardService, "userDataService", userDataService);
+        ReflectionTestUtils.setField(messageCardService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(messageCardService, "meterRegistry", new SimpleMeterRegistry());
+        return messageCardService;
+    }
+}
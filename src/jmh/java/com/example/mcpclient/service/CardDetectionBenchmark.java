@@ -0,0 +1,49 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.MessageCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageCardService#detectCardFromMessage(String)} over the message corpora, with order and user
+ * lookups answered in memory. Covers keyword matching, order number extraction and card construction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardDetectionBenchmark {
+
+    @Param({"zh", "en"})
+    String language;
+
+    private MessageCardService messageCardService;
+
+    private String[] messages;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        messageCardService = BenchmarkFixtures.messageCardService(BenchmarkFixtures.objectMapper());
+        messages = BenchmarkFixtures.messages(language);
+    }
+
+    @Benchmark
+    public MessageCard detectCard() {
+        return messageCardService.detectCardFromMessage(messages[next++ % messages.length]);
+    }
+}
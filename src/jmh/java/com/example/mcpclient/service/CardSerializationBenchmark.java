@@ -0,0 +1,65 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.MessageCard;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of order, logistics and tracking cards through the polymorphic {@link MessageCard} type,
+ * compared with serving the JSON pre-serialized by {@link MessageCardService} when a card is saved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardSerializationBenchmark {
+
+    private MessageCardService messageCardService;
+
+    private ObjectWriter cardWriter;
+
+    private List<MessageCard> cards;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        messageCardService = BenchmarkFixtures.messageCardService(objectMapper);
+        cardWriter = objectMapper.writerFor(MessageCard.class);
+        cards = List.of(
+                messageCardService.createSampleOrderCard(),
+                messageCardService.createSampleLogisticsCard(),
+                messageCardService.createSampleTrackingCard());
+    }
+
+    @Benchmark
+    public byte[] serializePolymorphic() throws JsonProcessingException {
+        return cardWriter.writeValueAsBytes(nextCard());
+    }
+
+    @Benchmark
+    public byte[] storedCardJson() {
+        return messageCardService.getCardJson(nextCard().getId());
+    }
+
+    private MessageCard nextCard() {
+        return cards.get(next++ % cards.size());
+    }
+}
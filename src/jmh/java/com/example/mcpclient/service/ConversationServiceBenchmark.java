@@ -0,0 +1,92 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ConversationMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversation history appends and reads from many threads at once, as chat turns do for their sessions.
+ * Each turn appends the user message, reads the prompt window of the history, then appends the reply.
+ * A session only runs one turn at a time, so every thread works on its own slice of the sessions and the
+ * threads contend on the shared conversation map only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ConversationServiceBenchmark {
+
+    @Param({"100", "10000"})
+    int sessionCount;
+
+    private ConversationService conversationService;
+
+    @Setup
+    public void setUp() {
+        conversationService = new ConversationService();
+        ReflectionTestUtils.setField(conversationService, "maxHistoryLength", 10);
+        ReflectionTestUtils.setField(conversationService, "historyTokenBudget", 2000);
+        ReflectionTestUtils.setField(conversationService, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    /**
+     * The sessions owned by one thread, and its cursor over the message corpus
+     */
+    @State(Scope.Thread)
+    public static class Sessions {
+
+        private final String[] messages = BenchmarkFixtures.CHINESE_MESSAGES;
+
+        private String[] sessionIds;
+
+        private int next;
+
+        @Setup
+        public void setUp(ConversationServiceBenchmark benchmark, ThreadParams threadParams) {
+            int perThread = Math.max(1, benchmark.sessionCount / threadParams.getThreadCount());
+            sessionIds = new String[perThread];
+            for (int i = 0; i < perThread; i++) {
+                sessionIds[i] = "session-" + threadParams.getThreadIndex() + "-" + i;
+            }
+        }
+
+        String nextSession() {
+            return sessionIds[ThreadLocalRandom.current().nextInt(sessionIds.length)];
+        }
+
+        String nextMessage() {
+            return messages[next++ % messages.length];
+        }
+    }
+
+    @Benchmark
+    public int chatTurn(Sessions sessions) {
+        String sessionId = sessions.nextSession();
+        conversationService.addUserMessage(sessionId, sessions.nextMessage(), null);
+        int length = 0;
+        for (ConversationMessage message : conversationService.getPromptHistory(sessionId)) {
+            length += message.getContent().length();
+        }
+        conversationService.addAssistantMessage(sessionId, sessions.nextMessage(), null);
+        return length;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mcpclient.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LlmChatService#determineDomainFromMessage(String)} over the message corpora,
+ * which scores every discovered tool against the message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomainDetectionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int toolCount;
+
+    @Param({"zh", "en"})
+    String language;
+
+    private LlmChatService llmChatService;
+
+    private String[] messages;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        llmChatService = new LlmChatService();
+        ReflectionTestUtils.setField(llmChatService, "mcpServiceDiscoveryService",
+                BenchmarkFixtures.discoveryService(toolCount));
+        messages = BenchmarkFixtures.messages(language);
+    }
+
+    @Benchmark
+    public String determineDomain() {
+        return llmChatService.determineDomainFromMessage(nextMessage());
+    }
+
+    private String nextMessage() {
+        return messages[next++ % messages.length];
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The prompt build stage of a chat turn: group the discovered tools by domain, then build the system prompt
+ * for the detected domain. The static prefix is cached after the first call, as in the application.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SystemPromptBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int toolCount;
+
+    private LlmChatService llmChatService;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        llmChatService = new LlmChatService();
+        ReflectionTestUtils.setField(llmChatService, "mcpServiceDiscoveryService",
+                BenchmarkFixtures.discoveryService(toolCount));
+        ReflectionTestUtils.setField(llmChatService, "objectMapper", BenchmarkFixtures.objectMapper());
+    }
+
+    @Benchmark
+    public String buildSystemPrompt() throws JsonProcessingException {
+        String domain = BenchmarkFixtures.DOMAINS[next++ % BenchmarkFixtures.DOMAINS.length];
+        Map<String, List<McpToolInfo>> toolsByDomain = llmChatService.getToolsOrganizedByDomain();
+        List<McpToolInfo> allTools = new ArrayList<>();
+        toolsByDomain.values().forEach(allTools::addAll);
+        return llmChatService.createSystemPromptWithDomainFocus(allTools, toolsByDomain.get(domain), domain);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link McpServiceDiscoveryService#getToolByName(String)}, called for every MCP tool invocation,
+ * with hits on early and late tools and a miss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToolLookupBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int toolCount;
+
+    private McpServiceDiscoveryService discoveryService;
+
+    private List<String> toolNames;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        discoveryService = BenchmarkFixtures.discoveryService(toolCount);
+        toolNames = BenchmarkFixtures.toolNames(toolCount);
+    }
+
+    @Benchmark
+    public McpToolInfo getToolByName() {
+        return discoveryService.getToolByName(toolNames.get(next++ % toolNames.size()));
+    }
+}
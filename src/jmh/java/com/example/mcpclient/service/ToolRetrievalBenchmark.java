@@ -0,0 +1,56 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BM25 selection of the tools to describe in the system prompt, with the index already built.
+ * The selection is bounded by the tool budget, so its size stays flat as the catalog grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToolRetrievalBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int toolCount;
+
+    @Param({"zh", "en"})
+    String language;
+
+    private ToolRetrievalIndex toolRetrievalIndex;
+
+    private String[] messages;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        toolRetrievalIndex = new ToolRetrievalIndex(BenchmarkFixtures.discoveryService(toolCount),
+                BenchmarkFixtures.objectMapper(), new SimpleMeterRegistry(), 20, 3000);
+        messages = BenchmarkFixtures.messages(language);
+        toolRetrievalIndex.search(messages[0]);
+    }
+
+    @Benchmark
+    public List<McpToolInfo> selectTools() {
+        return toolRetrievalIndex.search(messages[next++ % messages.length]);
+    }
+}
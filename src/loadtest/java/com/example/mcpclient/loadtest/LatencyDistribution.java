@@ -0,0 +1,85 @@
+package com.example.mcpclient.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency of a stub endpoint, parsed from a short spec:
+ * <ul>
+ *     <li>{@code fixed:500}: always 500ms</li>
+ *     <li>{@code uniform:200:800}: uniformly between 200ms and 800ms</li>
+ *     <li>{@code lognormal:800:4000}: log-normal with a median of 800ms and a p99 of 4000ms,
+ *     the long-tailed shape of LLM response times</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * Sample a latency in milliseconds
+     */
+    public abstract long sampleMillis();
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed(Long.parseLong(parts[1]));
+                case "uniform":
+                    return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                case "lognormal":
+                    return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec, e);
+        }
+    }
+
+    public static LatencyDistribution fixed(long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed " + millis + "ms";
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+            }
+
+            @Override
+            public String toString() {
+                return "uniform " + minMillis + "-" + maxMillis + "ms";
+            }
+        };
+    }
+
+    public static LatencyDistribution logNormal(double medianMillis, double p99Millis) {
+        double mu = Math.log(medianMillis);
+        double sigma = (Math.log(p99Millis) - mu) / Z_99;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "log-normal median " + Math.round(medianMillis) + "ms, p99 " + Math.round(p99Millis) + "ms";
+            }
+        };
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.mcpclient.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Load generator for {@code POST /api/chat}.
+ * <ul>
+ *     <li>Closed loop: a fixed number of users, each with its own session, send their next message as soon as
+ *     the previous reply arrives. Throughput is an outcome; use it to find the saturation point.</li>
+ *     <li>Open loop: requests arrive at a fixed rate regardless of how fast replies come back, each in a new
+ *     session. Latency is measured from the intended send time, so a stalled server is not hidden by the
+ *     generator slowing down with it (coordinated omission).</li>
+ * </ul>
+ * Requests sent during the warmup are not recorded.
+ */
+public class LoadGenerator {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final URI chatUri;
+    private final Supplier<String> messages;
+    private final Duration requestTimeout;
+
+    public LoadGenerator(URI baseUri, Supplier<String> messages, Duration requestTimeout) {
+        this.chatUri = baseUri.resolve("/api/chat");
+        this.messages = messages;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Run a closed loop with the given number of concurrent users
+     */
+    public Report runClosedLoop(int users, Duration warmup, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder();
+        long startNanos = System.nanoTime();
+        long recordFromNanos = startNanos + warmup.toNanos();
+        long endNanos = recordFromNanos + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            Thread thread = new Thread(() -> {
+                String sessionCookie = null;
+                while (System.nanoTime() < endNanos) {
+                    long sendNanos = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = httpClient.send(request(sessionCookie),
+                                HttpResponse.BodyHandlers.ofString());
+                        sessionCookie = response.headers().firstValue("Set-Cookie")
+                                .map(cookie -> cookie.split(";", 2)[0])
+                                .orElse(sessionCookie);
+                        if (sendNanos >= recordFromNanos) {
+                            recorder.record(sendNanos, System.nanoTime(), outcome(response));
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        if (sendNanos >= recordFromNanos) {
+                            recorder.record(sendNanos, System.nanoTime(), e.getClass().getSimpleName());
+                        }
+                    }
+                }
+            }, "load-user-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return recorder.report("closed loop, " + users + " users", duration);
+    }
+
+    /**
+     * Run an open loop at the given arrival rate
+     */
+    public Report runOpenLoop(double requestsPerSecond, Duration warmup, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long startNanos = System.nanoTime();
+        long recordFromNanos = startNanos + warmup.toNanos();
+        long endNanos = recordFromNanos + duration.toNanos();
+
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (long intendedNanos = startNanos; intendedNanos < endNanos; intendedNanos += intervalNanos) {
+            long waitNanos = intendedNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            long scheduledNanos = intendedNanos;
+            boolean recorded = scheduledNanos >= recordFromNanos;
+            inFlight.add(httpClient.sendAsync(request(null), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        if (recorded) {
+                            recorder.record(scheduledNanos, System.nanoTime(),
+                                    error != null ? error.getClass().getSimpleName() : outcome(response));
+                        }
+                    }));
+            inFlight.removeIf(CompletableFuture::isDone);
+        }
+
+        // Replies still outstanding count toward the latency of the run; wait for them up to the request timeout
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                    .get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Timed out or failed requests were recorded by their own callbacks
+        }
+        return recorder.report(String.format(Locale.ROOT, "open loop, %.1f requests/s", requestsPerSecond), duration);
+    }
+
+    private HttpRequest request(String sessionCookie) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of("message", messages.get()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize chat request", e);
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(chatUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (sessionCookie != null) {
+            builder.header("Cookie", sessionCookie);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Classify a reply: "ok", "http_<status>", or "failed" when the chat reported {@code success: false}
+     */
+    private static String outcome(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            return "http_" + response.statusCode();
+        }
+        // The reply is preceded by whitespace heartbeats while the turn is running
+        return response.body().contains("\"success\":true") ? Recorder.OK : "failed";
+    }
+
+    /**
+     * Pick a random message from a corpus, replacing {@code {orderNo}} with a fresh order number
+     * so that replies are not served from the response cache
+     */
+    public static Supplier<String> randomMessages(List<String> corpus) {
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String message = corpus.get(random.nextInt(corpus.size()));
+            return message.replace("{orderNo}", "OD" + (20230000000L + random.nextInt(1_000_000)));
+        };
+    }
+
+    /**
+     * Collects latencies and counts of every outcome, keeping the latencies of successful requests apart
+     * so that fast failures and slow timeouts do not hide in them
+     */
+    private static class Recorder {
+
+        static final String OK = "ok";
+
+        private final Latencies okLatencies = new Latencies();
+        private final Latencies allLatencies = new Latencies();
+        private final Map<String, Integer> outcomes = new TreeMap<>();
+
+        synchronized void record(long sendNanos, long endNanos, String outcome) {
+            outcomes.merge(outcome, 1, Integer::sum);
+            allLatencies.add(endNanos - sendNanos);
+            if (OK.equals(outcome)) {
+                okLatencies.add(endNanos - sendNanos);
+            }
+        }
+
+        synchronized Report report(String description, Duration duration) {
+            return new Report(description, duration, okLatencies.sorted(), allLatencies.sorted(),
+                    new TreeMap<>(outcomes));
+        }
+    }
+
+    /**
+     * Growable array of latencies in nanoseconds
+     */
+    private static class Latencies {
+
+        private long[] values = new long[1024];
+        private int count;
+
+        void add(long latencyNanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = latencyNanos;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Throughput and latency percentiles of a run, for successful requests and for all requests
+     */
+    public static class Report {
+
+        private final String description;
+        private final Duration duration;
+        private final long[] sortedOkLatencies;
+        private final long[] sortedAllLatencies;
+        private final Map<String, Integer> outcomes;
+
+        Report(String description, Duration duration, long[] sortedOkLatencies, long[] sortedAllLatencies,
+               Map<String, Integer> outcomes) {
+            this.description = description;
+            this.duration = duration;
+            this.sortedOkLatencies = sortedOkLatencies;
+            this.sortedAllLatencies = sortedAllLatencies;
+            this.outcomes = outcomes;
+        }
+
+        public int getSuccessCount() {
+            return sortedOkLatencies.length;
+        }
+
+        public int getRequestCount() {
+            return outcomes.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        public double getThroughput() {
+            return getSuccessCount() / (duration.toMillis() / 1000.0);
+        }
+
+        /**
+         * Latency of successful requests at the given percentile, in milliseconds
+         */
+        public double percentile(double percentile) {
+            return percentile(sortedOkLatencies, percentile);
+        }
+
+        /**
+         * Latency of all requests, whatever their outcome, at the given percentile, in milliseconds
+         */
+        public double percentileOfAll(double percentile) {
+            return percentile(sortedAllLatencies, percentile);
+        }
+
+        private static double percentile(long[] sortedLatencies, double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1_000_000.0;
+        }
+
+        public String format() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format(Locale.ROOT, "%s for %ds%n", description, duration.toSeconds()));
+            report.append(String.format(Locale.ROOT, "  requests:   %d (%s)%n", getRequestCount(), outcomes));
+            report.append(String.format(Locale.ROOT, "  throughput: %.1f successful requests/s%n", getThroughput()));
+            report.append(String.format(Locale.ROOT,
+                    "  latency ms (ok):  p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentile(50), percentile(90), percentile(99), percentile(99.9), percentile(100)));
+            report.append(String.format(Locale.ROOT,
+                    "  latency ms (all): p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentileOfAll(50), percentileOfAll(90), percentileOfAll(99), percentileOfAll(99.9),
+                    percentileOfAll(100)));
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.mcpclient.loadtest;
+
+import com.example.mcpclient.McpClientDemoApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local load test of {@code /api/chat} against stub DeepSeek and MCP servers, with a static discovery file
+ * standing in for Nacos. Run with the {@code loadtest} profile:
+ * <pre>
+ * mvn -P loadtest test-compile exec:exec -Dloadtest.args="--mode=closed --users=50 --duration=60"
+ * </pre>
+ * Modes:
+ * <ul>
+ *     <li>{@code closed} (default) / {@code open}: start the stubs and the application in this JVM, then run
+ *     the load. With {@code --target=http://host:port} the application is not started and the load is sent
+ *     to an application already running against the stubs, which gives numbers closer to production.</li>
+ *     <li>{@code stubs}: only start the stubs and print the application arguments that point at them.</li>
+ * </ul>
+ * Options (defaults in brackets): --users [20], --rate [20] requests/s, --warmup [10] and --duration [60]
+ * seconds, --deepseek-latency [lognormal:800:4000], --token-interval-ms [20], --mcp-latency [uniform:5:30],
+ * --deepseek-port and --mcp-port [random], --language [mixed] zh, en or mixed.
+ */
+public class LoadTest {
+
+    private static final List<String> CHINESE_MESSAGES = List.of(
+            "帮我查一下订单号：{orderNo} 现在是什么状态",
+            "订单号 {orderNo} 已发货了吗？什么时候能到",
+            "我的快递到哪里了",
+            "包裹三天了还没到，能帮我追踪一下物流详情吗",
+            "我想修改一下收货地址",
+            "怎么查看我的会员等级和积分",
+            "上个月买的蓝牙耳机想退货，应该怎么操作");
+
+    private static final List<String> ENGLISH_MESSAGES = List.of(
+            "What is the status of my order {orderNo}?",
+            "Has order {orderNo} been shipped yet?",
+            "Where is my package? It has been in transit for three days",
+            "I want to update the shipping address on my account",
+            "How do I return the bluetooth headphones I bought last month?");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String mode = options.getOrDefault("mode", "closed");
+
+        LatencyDistribution deepSeekLatency = LatencyDistribution.parse(
+                options.getOrDefault("deepseek-latency", "lognormal:800:4000"));
+        LatencyDistribution mcpLatency = LatencyDistribution.parse(options.getOrDefault("mcp-latency", "uniform:5:30"));
+        long tokenIntervalMillis = Long.parseLong(options.getOrDefault("token-interval-ms", "20"));
+
+        try (StubDeepSeekServer deepSeek = new StubDeepSeekServer(
+                Integer.parseInt(options.getOrDefault("deepseek-port", "0")), deepSeekLatency, tokenIntervalMillis);
+             StubMcpServer mcp = new StubMcpServer(Integer.parseInt(options.getOrDefault("mcp-port", "0")), mcpLatency)) {
+
+            Path discoveryFile = Files.createTempFile("mcp-services-", ".json");
+            discoveryFile.toFile().deleteOnExit();
+            mcp.writeDiscoveryFile(discoveryFile);
+
+            String[] appArgs = {
+                    "--deepseek.base-url=http://127.0.0.1:" + deepSeek.getPort(),
+                    "--deepseek.api-key=stub",
+                    "--mcp.discovery.static-file=" + discoveryFile,
+                    // Simulated users send far faster than real ones; load the server rather than their rate limit
+                    "--chat.rate-limit.enabled=false"
+            };
+            System.out.printf("Stub DeepSeek on port %d (%s), stub MCP on port %d (%s)%n",
+                    deepSeek.getPort(), deepSeekLatency, mcp.getPort(), mcpLatency);
+
+            if ("stubs".equals(mode)) {
+                System.out.println("Start the application with: " + String.join(" ", appArgs));
+                Thread.currentThread().join();
+                return;
+            }
+
+            ConfigurableApplicationContext context = null;
+            URI target;
+            if (options.containsKey("target")) {
+                target = URI.create(options.get("target"));
+            } else {
+                context = startApplication(appArgs);
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                target = URI.create("http://127.0.0.1:" + port);
+            }
+
+            try {
+                LoadGenerator generator = new LoadGenerator(target, LoadGenerator.randomMessages(corpus(options)),
+                        Duration.ofSeconds(90));
+                Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+                Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+
+                System.out.printf("Sending load to %s, warming up for %ds%n", target, warmup.toSeconds());
+                LoadGenerator.Report report = "open".equals(mode)
+                        ? generator.runOpenLoop(Double.parseDouble(options.getOrDefault("rate", "20")), warmup, duration)
+                        : generator.runClosedLoop(Integer.parseInt(options.getOrDefault("users", "20")), warmup, duration);
+
+                System.out.print(report.format());
+                System.out.printf("  stub calls: deepseek=%d mcp=%d%n", deepSeek.getRequestCount(), mcp.getRequestCount());
+            } finally {
+                if (context != null) {
+                    context.close();
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Start the application on a random port, logging to a file so that the console shows the report
+     */
+    private static ConfigurableApplicationContext startApplication(String[] appArgs) {
+        // DevTools is on the test classpath; a restart would start a second application
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        String[] args = new String[appArgs.length + 3];
+        System.arraycopy(appArgs, 0, args, 0, appArgs.length);
+        args[appArgs.length] = "--server.port=0";
+        args[appArgs.length + 1] = "--logging.file.name=target/loadtest-app.log";
+        args[appArgs.length + 2] = "--logging.threshold.console=OFF";
+        return SpringApplication.run(McpClientDemoApplication.class, args);
+    }
+
+    private static List<String> corpus(Map<String, String> options) {
+        switch (options.getOrDefault("language", "mixed")) {
+            case "zh":
+                return CHINESE_MESSAGES;
+            case "en":
+                return ENGLISH_MESSAGES;
+            default:
+                List<String> mixed = new ArrayList<>(CHINESE_MESSAGES);
+                mixed.addAll(ENGLISH_MESSAGES);
+                return mixed;
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String[] parts = arg.substring(2).split("=", 2);
+            options.put(parts[0], parts[1]);
+        }
+        return options;
+    }
+}
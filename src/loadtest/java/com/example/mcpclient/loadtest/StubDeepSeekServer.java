@@ -0,0 +1,186 @@
+package com.example.mcpclient.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An OpenAI/DeepSeek compatible chat completion endpoint ({@code POST /v1/chat/completions}) for load tests.
+ * Replies after a latency drawn from a {@link LatencyDistribution}; with {@code "stream": true} the latency is the
+ * time to the first token and the reply is sent as server-sent events, one chunk per token interval.
+ * Token usage is estimated from the request, and a system prompt seen before is reported as a prompt cache hit.
+ */
+public class StubDeepSeekServer implements AutoCloseable {
+
+    private static final String REPLY = "您好！根据订单信息，您的订单已经发货，预计明天送达。"
+            + "You can track the package with the logistics card below. 还有什么可以帮您的吗？";
+
+    // Number of characters per streamed chunk
+    private static final int CHUNK_SIZE = 4;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyDistribution latency;
+    private final long tokenIntervalMillis;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<String> seenSystemPrompts = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubDeepSeekServer(int port, LatencyDistribution latency, long tokenIntervalMillis) throws IOException {
+        this.latency = latency;
+        this.tokenIntervalMillis = tokenIntervalMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            requests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            ObjectNode usage = usage(request);
+            String model = request.path("model").asText("deepseek-chat");
+
+            sleep(latency.sampleMillis());
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, model, usage);
+            } else {
+                respond(exchange, model, usage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, String model, ObjectNode usage) throws IOException {
+        ObjectNode response = completion(newId(), model, "chat.completion");
+        ObjectNode choice = ((ArrayNode) response.get("choices")).addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", REPLY);
+        choice.put("finish_reason", "stop");
+        response.set("usage", usage);
+
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void stream(HttpExchange exchange, String model, ObjectNode usage) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String id = newId();
+
+        for (int i = 0; i < REPLY.length(); i += CHUNK_SIZE) {
+            if (i > 0) {
+                sleep(tokenIntervalMillis);
+            }
+            ObjectNode chunk = completion(id, model, "chat.completion.chunk");
+            ObjectNode choice = ((ArrayNode) chunk.get("choices")).addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", REPLY.substring(i, Math.min(REPLY.length(), i + CHUNK_SIZE)));
+            choice.putNull("finish_reason");
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+        }
+
+        ObjectNode last = completion(id, model, "chat.completion.chunk");
+        ObjectNode choice = ((ArrayNode) last.get("choices")).addObject();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.put("finish_reason", "stop");
+        last.set("usage", usage);
+        writeEvent(out, objectMapper.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+    }
+
+    private ObjectNode completion(String id, String model, String object) {
+        ObjectNode completion = objectMapper.createObjectNode();
+        completion.put("id", id);
+        completion.put("object", object);
+        completion.put("created", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        completion.put("model", model);
+        completion.putArray("choices");
+        return completion;
+    }
+
+    /**
+     * Estimate usage at about four characters per token, reporting the system prompt as cached once seen
+     */
+    private ObjectNode usage(JsonNode request) {
+        int promptChars = 0;
+        int systemChars = 0;
+        for (JsonNode message : request.path("messages")) {
+            String content = message.path("content").asText("");
+            promptChars += content.length();
+            if ("system".equals(message.path("role").asText()) && !seenSystemPrompts.add(content)) {
+                systemChars += content.length();
+            }
+        }
+        int promptTokens = Math.max(1, promptChars / 4);
+        int cacheHitTokens = Math.min(promptTokens, systemChars / 4);
+        int completionTokens = Math.max(1, REPLY.length() / 4);
+
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        usage.put("prompt_cache_hit_tokens", cacheHitTokens);
+        usage.put("prompt_cache_miss_tokens", promptTokens - cacheHitTokens);
+        return usage;
+    }
+
+    private static String newId() {
+        return "stub-" + UUID.randomUUID();
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
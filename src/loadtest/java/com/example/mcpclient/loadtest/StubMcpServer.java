@@ -0,0 +1,164 @@
+package com.example.mcpclient.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MCP tool endpoints of the tradeCenter and userCenter services for load tests:
+ * {@code getOrderWithLogisticsByOrderNo} and {@code getUserById} at {@code POST /api/mcp/tools/{name}}.
+ * Order numbers containing "404" are reported as not found. {@link #writeDiscoveryFile(Path)} writes a
+ * static discovery file pointing at this server, to be used with {@code mcp.discovery.static-file}.
+ */
+public class StubMcpServer implements AutoCloseable {
+
+    private static final String TOOLS_PATH = "/api/mcp/tools/";
+
+    // Service name to the tools it registers
+    private static final Map<String, String[][]> SERVICES = Map.of(
+            "tradeCenter-mcp", new String[][]{
+                    {"getOrderWithLogisticsByOrderNo", "Query order details together with logistics information by order number"}},
+            "userCenter-mcp", new String[][]{
+                    {"getUserById", "Get user profile information such as username, phone and address by user ID"}});
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyDistribution latency;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubMcpServer(int port, LatencyDistribution latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext(TOOLS_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Write a static discovery file, in the {@code {"service-name": [instances]}} format, for the stub services
+     */
+    public void writeDiscoveryFile(Path file) throws IOException {
+        ObjectNode services = objectMapper.createObjectNode();
+        SERVICES.forEach((serviceName, tools) -> {
+            ObjectNode instance = services.putArray(serviceName).addObject();
+            instance.put("instanceId", "127.0.0.1#" + getPort() + "#" + serviceName);
+            instance.put("ip", "127.0.0.1");
+            instance.put("port", getPort());
+            instance.put("weight", 1.0);
+            instance.put("healthy", true);
+            instance.put("enabled", true);
+            instance.put("ephemeral", true);
+            instance.put("serviceName", serviceName);
+
+            ObjectNode metadata = instance.putObject("metadata");
+            metadata.put("protocol", "MCP");
+            metadata.put("mcp-version", "v1alpha1");
+            metadata.put("mcp-tools-count", String.valueOf(tools.length));
+            for (int i = 0; i < tools.length; i++) {
+                metadata.put("tool-" + i + "-name", tools[i][0]);
+                metadata.put("tool-" + i + "-description", tools[i][1]);
+            }
+        });
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), services);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String tool = exchange.getRequestURI().getPath().substring(TOOLS_PATH.length());
+            JsonNode params = objectMapper.readTree(exchange.getRequestBody());
+
+            ObjectNode response;
+            switch (tool) {
+                case "getOrderWithLogisticsByOrderNo":
+                    response = order(params.path("orderNo").asText());
+                    break;
+                case "getUserById":
+                    response = user(params.path("id").asLong());
+                    break;
+                default:
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+            }
+
+            Thread.sleep(latency.sampleMillis());
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ObjectNode order(String orderNo) {
+        ObjectNode response = objectMapper.createObjectNode();
+        if (orderNo.isEmpty() || orderNo.contains("404")) {
+            response.put("success", false);
+            response.putNull("data");
+            return response;
+        }
+
+        long id = Math.abs((long) orderNo.hashCode());
+        response.put("success", true);
+        ObjectNode data = response.putObject("data");
+        data.put("id", id);
+        data.put("orderNo", orderNo);
+        data.put("userId", 10000 + id % 1000);
+        data.put("status", (int) (id % 5));
+        data.put("createdAt", "2023-06-01 12:34:56");
+        data.put("amount", 1498.0);
+        data.put("address", "上海市浦东新区张江路88号");
+        data.put("itemId", 1001 + id % 5);
+        data.put("quantity", 2);
+
+        // Logistics details the real service returns along with the order, ignored by the order card
+        ObjectNode logistics = data.putObject("logistics");
+        logistics.put("company", "顺丰速运");
+        logistics.put("trackingNo", "SF" + id);
+        ArrayNode traces = logistics.putArray("traces");
+        for (int i = 0; i < 8; i++) {
+            traces.addObject()
+                    .put("time", "2023-06-0" + (i / 4 + 2) + " 0" + i + ":00:00")
+                    .put("description", "快件已到达上海转运中心，正在发往下一站");
+        }
+        return response;
+    }
+
+    private ObjectNode user(long userId) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("success", true);
+        ObjectNode data = response.putObject("data");
+        data.put("id", userId);
+        data.put("username", "用户" + userId);
+        data.put("phone", "138" + String.format("%08d", userId % 100_000_000));
+        data.put("address", "上海市浦东新区张江路88号");
+        return response;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
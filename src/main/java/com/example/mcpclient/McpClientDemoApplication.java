@@ -6,6 +6,7 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 /**
  * Main application class for the MCP Client Demo
@@ -44,6 +45,9 @@ public class McpClientDemoApplication {
             "org.springframework.ai.model.openai.autoconfigure.OpenAiAutoConfiguration"
         ));
         
+        // Record startup steps (bean creation, context refresh) for the /actuator/startup endpoint
+        app.setApplicationStartup(new BufferingApplicationStartup(4096));
+        
         app.run(args);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.example.mcpclient.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration of the Reactor Netty HTTP client used to call the DeepSeek API.
+ * Sizes and evicts the connection pool explicitly, bounds pending acquires and
+ * applies connect and response timeouts, compression and HTTP/2 negotiation.
+ * Only the DeepSeek client wraps it in a connector: a connector bean would become the connector
+ * of every WebClient built from Spring Boot's builder.
+ */
+@Configuration
+@Slf4j
+public class DeepSeekHttpClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider deepSeekConnectionProvider(
+            @Value("${deepseek.http.max-connections:50}") int maxConnections,
+            @Value("${deepseek.http.pending-acquire-max-count:200}") int pendingAcquireMaxCount,
+            @Value("${deepseek.http.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+            @Value("${deepseek.http.max-idle-time-ms:30000}") long maxIdleTimeMs,
+            @Value("${deepseek.http.max-life-time-ms:300000}") long maxLifeTimeMs,
+            @Value("${deepseek.http.evict-in-background-ms:30000}") long evictInBackgroundMs
+    ) {
+        log.info("DeepSeek connection pool: maxConnections={}, pendingAcquireMaxCount={}, maxIdleTime={}ms, maxLifeTime={}ms",
+                maxConnections, pendingAcquireMaxCount, maxIdleTimeMs, maxLifeTimeMs);
+        return ConnectionProvider.builder("deepseek")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictInBackgroundMs))
+                // Exposes reactor.netty.connection.provider.* pool gauges through Micrometer
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public HttpClient deepSeekHttpClient(
+            ConnectionProvider deepSeekConnectionProvider,
+            @Value("${deepseek.base-url}") String baseUrl,
+            @Value("${deepseek.http.connect-timeout-ms:3000}") int connectTimeoutMs,
+            @Value("${deepseek.http.response-timeout-ms:15000}") long responseTimeoutMs,
+            @Value("${deepseek.http.compress:true}") boolean compress,
+            @Value("${deepseek.http.protocols:HTTP11,H2}") List<String> protocols
+    ) {
+        HttpClient httpClient = HttpClient.create(deepSeekConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .compress(compress);
+
+        // HTTP/2 is negotiated through ALPN, so it only applies to TLS endpoints; plain HTTP stays on HTTP/1.1
+        if (baseUrl.startsWith("https")) {
+            HttpProtocol[] httpProtocols = protocols.stream()
+                    .map(String::trim)
+                    .map(HttpProtocol::valueOf)
+                    .filter(protocol -> protocol != HttpProtocol.H2C)
+                    .toArray(HttpProtocol[]::new);
+            httpClient = httpClient.protocol(httpProtocols).secure();
+            log.info("DeepSeek HTTP client protocols: {}", Arrays.toString(httpProtocols));
+        }
+
+        return httpClient;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.mcpclient.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Span exporters for OpenTelemetry tracing, selected with {@code tracing.exporter}.
+ * Spans are always created and propagated to MCP servers over W3C {@code traceparent} headers;
+ * the exporter only decides where finished spans go:
+ * <ul>
+ *     <li>{@code none}: spans are dropped (trace IDs still show up in the logs)</li>
+ *     <li>{@code logging}: one log line per span</li>
+ *     <li>{@code otlp-file}: OTLP JSON lines appended to {@code tracing.otlp-file.path}, readable by the
+ *     OpenTelemetry Collector's otlpjsonfile receiver</li>
+ * </ul>
+ */
+@Configuration
+@Slf4j
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "logging")
+    public SpanExporter loggingSpanExporter() {
+        log.info("Exporting trace spans to the log");
+        return LoggingSpanExporter.create();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "otlp-file")
+    public SpanExporter otlpFileSpanExporter(
+            @Value("${tracing.otlp-file.path:${java.io.tmpdir}/mcp-client-demo/traces.jsonl}") String path)
+            throws IOException {
+        Path file = Path.of(path).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        OtlpFileHandler fileHandler = new OtlpFileHandler(file);
+
+        // The OTLP JSON exporter writes each batch as one line to a java.util.logging logger; route that logger to the file
+        Logger exporterLogger = Logger.getLogger(OtlpJsonLoggingSpanExporter.class.getName());
+        exporterLogger.addHandler(fileHandler);
+        exporterLogger.setUseParentHandlers(false);
+        exporterLogger.setLevel(Level.INFO);
+
+        log.info("Exporting trace spans as OTLP JSON to {}", file);
+        return new OtlpFileSpanExporter(OtlpJsonLoggingSpanExporter.create(), exporterLogger, fileHandler);
+    }
+
+    /**
+     * Appends the exporter's log records, one OTLP JSON batch each, as lines of a file opened directly,
+     * so that the path is taken literally rather than as a {@link java.util.logging.FileHandler} pattern
+     */
+    private static class OtlpFileHandler extends Handler {
+
+        private final Writer writer;
+
+        OtlpFileHandler(Path file) throws IOException {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (!isLoggable(record)) {
+                return;
+            }
+            try {
+                writer.write(record.getMessage());
+                writer.write(System.lineSeparator());
+                writer.flush();
+            } catch (IOException e) {
+                reportError("Failed to write trace spans", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                reportError("Failed to flush trace spans", e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                reportError("Failed to close trace file", e, ErrorManager.CLOSE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * The OTLP JSON exporter, closing its file once the tracer provider has shut it down with the last batch
+     */
+    private static class OtlpFileSpanExporter implements SpanExporter {
+
+        private final SpanExporter delegate;
+        private final Logger exporterLogger;
+        private final OtlpFileHandler fileHandler;
+
+        OtlpFileSpanExporter(SpanExporter delegate, Logger exporterLogger, OtlpFileHandler fileHandler) {
+            this.delegate = delegate;
+            this.exporterLogger = exporterLogger;
+            this.fileHandler = fileHandler;
+        }
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            return delegate.export(spans);
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return delegate.flush();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            CompletableResultCode result = delegate.shutdown();
+            exporterLogger.removeHandler(fileHandler);
+            fileHandler.close();
+            return result;
+        }
+    }
+}
@@ -5,16 +5,42 @@ import com.example.mcpclient.model.ChatResponse;
 import com.example.mcpclient.model.ConversationMessage;
 import com.example.mcpclient.model.McpServiceInfo;
 import com.example.mcpclient.model.McpToolInfo;
+import com.example.mcpclient.service.ChatAdmissionLimiter;
+import com.example.mcpclient.service.ChatDeadline;
+import com.example.mcpclient.service.ChatRateLimiter;
+import com.example.mcpclient.service.ChatRejectedException;
+import com.example.mcpclient.service.ChatTimings;
 import com.example.mcpclient.service.ConversationService;
 import com.example.mcpclient.service.LlmChatService;
+import com.example.mcpclient.service.McpOutlierDetector;
 import com.example.mcpclient.service.McpServiceDiscoveryService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * REST API controller for MCP client operations
@@ -24,6 +50,11 @@ import java.util.List;
 @Slf4j
 public class ApiController {
 
+    private static final byte[] JSON_HEARTBEAT = " ".getBytes(StandardCharsets.UTF_8);
+    
+    private static final String SERVER_TIMING = "Server-Timing";
+    private static final String TRAILER = "Trailer";
+
     @Autowired
     private LlmChatService llmChatService;
     
@@ -33,28 +64,193 @@ public class ApiController {
     @Autowired
     private ConversationService conversationService;
     
+    @Autowired
+    private McpOutlierDetector mcpOutlierDetector;
+    
+    @Autowired
+    private ChatRateLimiter chatRateLimiter;
+    
+    @Autowired
+    private ChatAdmissionLimiter chatAdmissionLimiter;
+    
+    @Value("${chat.timeout-ms:60000}")
+    private long chatTimeoutMs;
+    
+    @Value("${chat.heartbeat-ms:2000}")
+    private long chatHeartbeatMs;
+    
+    @Value("${chat.deadline.chat-ms:20000}")
+    private long chatDeadlineMs;
+    
+    @Value("${chat.deadline.stream-ms:30000}")
+    private long streamChatDeadlineMs;
+    
     /**
-     * Chat endpoint to interact with LLM and MCP tools
+     * Chat endpoint to interact with LLM and MCP tools.
+     * While the answer is generated, whitespace is written as a heartbeat (leading whitespace is valid JSON)
+     * so that a closed connection is detected and the chat turn, including its DeepSeek call, is cancelled.
+     * Per-stage timings are returned in a Server-Timing header when the answer is ready before the first
+     * heartbeat commits the headers, in a Server-Timing trailer otherwise, and in the response body for
+     * requests with {@code "debug": true}.
+     * The turn is bounded by {@code chat.deadline.chat-ms}, or by a shorter budget sent by the caller
+     * in the {@value ChatDeadline#HEADER} header.
+     * Turns over the rate limit of the user or session, or beyond the global admission limit, are answered
+     * with 429 and a {@code Retry-After} header.
      */
     @PostMapping("/chat")
-    public ResponseEntity<ChatResponse> chat(@RequestBody ChatRequest request, HttpSession session) {
+    public ResponseEntity<ResponseBodyEmitter> chat(@RequestBody ChatRequest request, HttpSession session,
+                                                    HttpServletRequest servletRequest,
+                                                    HttpServletResponse servletResponse,
+                                                    @RequestHeader(value = ChatDeadline.HEADER, required = false) Long timeoutMs) {
         String sessionId = session.getId();
         log.info("Chat request received from session {} with message: {}", sessionId, request.getMessage());
-        ChatResponse response = llmChatService.processChat(request, sessionId);
-        return ResponseEntity.ok(response);
+        chatRateLimiter.acquire(rateLimitKey(servletRequest.getUserPrincipal(), sessionId));
+        
+        ChatTimings timings = new ChatTimings();
+        ChatDeadline deadline = ChatDeadline.after(Duration.ofMillis(chatDeadlineMs), timeoutMs);
+        Sinks.Empty<Void> admitted = Sinks.empty();
+        Mono<ChatResponse> chat = admit(request, sessionId, admitted)
+                .contextWrite(Context.of(ChatTimings.CONTEXT_KEY, timings, ChatDeadline.CONTEXT_KEY, deadline));
+        
+        AtomicBoolean timingsInTrailer = new AtomicBoolean();
+        sendTimingsTrailer(servletResponse, timings, timingsInTrailer);
+        
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(chatTimeoutMs);
+        emitWhenReady(emitter, chat, admitted.asMono(), sessionId,
+                () -> emitter.send(JSON_HEARTBEAT, MediaType.APPLICATION_JSON),
+                response -> {
+                    if (servletResponse.isCommitted()) {
+                        timingsInTrailer.set(true);
+                    } else {
+                        servletResponse.setHeader(SERVER_TIMING, timings.toServerTiming());
+                    }
+                    emitter.send(response, MediaType.APPLICATION_JSON);
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter);
     }
     
     /**
-     * Stream chat endpoint to support typed output effect
+     * Send the timings of a turn in a Server-Timing trailer of the chunked response, once its headers
+     * have been committed by a heartbeat before the answer was ready
      */
-    @PostMapping("/chat/stream")
-    public ResponseEntity<ChatResponse> streamChat(@RequestBody ChatRequest request, HttpSession session) {
-        // This is just a placeholder for the streaming functionality
-        // The actual streaming will be implemented in the front-end
+    private void sendTimingsTrailer(HttpServletResponse servletResponse, ChatTimings timings,
+                                    AtomicBoolean timingsInTrailer) {
+        try {
+            servletResponse.setTrailerFields(() -> timingsInTrailer.get()
+                    ? Map.of(SERVER_TIMING, timings.toServerTiming())
+                    : Map.of());
+            servletResponse.setHeader(TRAILER, SERVER_TIMING);
+        } catch (IllegalStateException e) {
+            // HTTP/1.0 has no trailers, timings of slow turns are then only in the debug body
+            log.debug("Response trailers not supported: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Stream chat endpoint to support typed output effect.
+     * Sends heartbeat comments while the answer is being generated, then a single "message" event with the response.
+     * The turn is bounded by {@code chat.deadline.stream-ms}, or by a shorter budget sent by the caller,
+     * and rate limited and admitted like {@link #chat}.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChat(@RequestBody ChatRequest request, HttpSession session,
+                                 HttpServletRequest servletRequest,
+                                 @RequestHeader(value = ChatDeadline.HEADER, required = false) Long timeoutMs) {
         String sessionId = session.getId();
         log.info("Stream chat request received from session {} with message: {}", sessionId, request.getMessage());
-        ChatResponse response = llmChatService.processChat(request, sessionId);
-        return ResponseEntity.ok(response);
+        chatRateLimiter.acquire(rateLimitKey(servletRequest.getUserPrincipal(), sessionId));
+        
+        ChatDeadline deadline = ChatDeadline.after(Duration.ofMillis(streamChatDeadlineMs), timeoutMs);
+        Sinks.Empty<Void> admitted = Sinks.empty();
+        Mono<ChatResponse> chat = admit(request, sessionId, admitted)
+                .contextWrite(Context.of(ChatDeadline.CONTEXT_KEY, deadline));
+        
+        SseEmitter emitter = new SseEmitter(chatTimeoutMs);
+        emitWhenReady(emitter, chat, admitted.asMono(), sessionId,
+                () -> emitter.send(SseEmitter.event().comment("heartbeat")),
+                response -> emitter.send(SseEmitter.event().name("message").data(response, MediaType.APPLICATION_JSON)));
+        return emitter;
+    }
+    
+    /**
+     * Rate limit by the authenticated user when there is one, otherwise by session
+     */
+    private static String rateLimitKey(Principal principal, String sessionId) {
+        return principal != null ? "user:" + principal.getName() : "session:" + sessionId;
+    }
+    
+    /**
+     * The chat turn, started once admitted. A turn still waiting for admission does not yet supersede the
+     * previous turn of its session, and a rejected one never does. Completes {@code admitted} when the turn starts.
+     */
+    private Mono<ChatResponse> admit(ChatRequest request, String sessionId, Sinks.Empty<Void> admitted) {
+        return chatAdmissionLimiter.admit(Mono.defer(() -> {
+            admitted.tryEmitEmpty();
+            return llmChatService.processChatAsync(request, sessionId);
+        }));
+    }
+    
+    /**
+     * Answer rejected chat turns with 429. Turns rejected while waiting for admission end here too, through
+     * the emitter's error; heartbeats only start once a turn is admitted, so none has committed the response.
+     */
+    @ExceptionHandler(ChatRejectedException.class)
+    public ResponseEntity<ChatResponse> handleChatRejected(ChatRejectedException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ChatResponse(e.getMessage(), false));
+    }
+    
+    /**
+     * Subscribe to a chat turn and write its response to the emitter, sending heartbeats from its admission
+     * until the response is ready. A failed write means the client has gone away, which cancels the chat turn.
+     */
+    private void emitWhenReady(ResponseBodyEmitter emitter, Mono<ChatResponse> chat, Mono<Void> admitted,
+                               String sessionId, EmitterWrite heartbeat, EmitterResponseWrite write) {
+        Disposable.Composite subscriptions = Disposables.composite();
+        Runnable cancel = () -> {
+            if (!subscriptions.isDisposed()) {
+                log.info("Client of session {} disconnected, cancelling chat request", sessionId);
+                subscriptions.dispose();
+            }
+        };
+        
+        subscriptions.add(admitted.thenMany(Flux.interval(Duration.ofMillis(chatHeartbeatMs)))
+                .subscribe(tick -> {
+                    try {
+                        heartbeat.write();
+                    } catch (IOException | IllegalStateException e) {
+                        cancel.run();
+                    }
+                }));
+        // Capture the request's observation so that the chat turn's spans are children of the HTTP server span
+        subscriptions.add(chat.contextCapture().subscribe(response -> {
+            subscriptions.dispose();
+            try {
+                write.write(response);
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.info("Client of session {} disconnected before the response was written", sessionId);
+            }
+        }, error -> {
+            subscriptions.dispose();
+            emitter.completeWithError(error);
+        }));
+        
+        emitter.onError(error -> cancel.run());
+        emitter.onTimeout(cancel);
+    }
+    
+    @FunctionalInterface
+    private interface EmitterWrite {
+        void write() throws IOException;
+    }
+    
+    @FunctionalInterface
+    private interface EmitterResponseWrite {
+        void write(ChatResponse response) throws IOException;
     }
     
     /**
@@ -79,11 +275,13 @@ public class ApiController {
     }
     
     /**
-     * Get all discovered MCP services
+     * Get all discovered MCP services, with the observed health and ejection state of their instances
      */
     @GetMapping("/services")
     public ResponseEntity<List<McpServiceInfo>> getAllServices() {
-        List<McpServiceInfo> services = mcpServiceDiscoveryService.getAllServices();
+        List<McpServiceInfo> services = mcpServiceDiscoveryService.getAllServices().stream()
+                .map(mcpOutlierDetector::withInstanceStates)
+                .toList();
         return ResponseEntity.ok(services);
     }
     
@@ -7,9 +7,17 @@ import com.example.mcpclient.model.OrderMessageCard;
 import com.example.mcpclient.service.MessageCardService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -20,9 +28,18 @@ import java.util.List;
 @Slf4j
 public class MessageCardController {
 
+    // 单次批量获取的最大卡片数量
+    private static final int MAX_BATCH_SIZE = 100;
+
+    // 卡片事件流在补全超时之外额外保持的时间
+    private static final long CARD_EVENTS_GRACE_MS = 1000;
+
     @Autowired
     private MessageCardService messageCardService;
     
+    @Value("${card.order.user-enrichment-timeout-ms:5000}")
+    private long userEnrichmentTimeoutMs;
+    
     /**
      * 获取所有卡片
      */
@@ -39,19 +56,61 @@ public class MessageCardController {
         return ResponseEntity.ok(messageCardService.getCardsByType(type));
     }
     
+    /**
+     * 批量获取卡片，返回以卡片ID为键的JSON对象，不存在的ID会被忽略
+     * 例如：GET /api/cards/batch?ids=id1,id2
+     */
+    @GetMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getCardsByIds(@RequestParam List<String> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(messageCardService.getCardsJson(ids));
+    }
+    
     /**
      * 获取指定ID的卡片
+     * 直接返回保存时预先序列化的JSON字节，避免每次请求重复序列化
      */
-    @GetMapping("/{id}")
-    public ResponseEntity<MessageCard> getCardById(@PathVariable String id) {
-        MessageCard card = messageCardService.getCardById(id);
-        if (card != null) {
-            return ResponseEntity.ok(card);
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getCardById(@PathVariable String id) {
+        byte[] json = messageCardService.getCardJson(id);
+        if (json != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * 订阅卡片补全，以SSE推送一条"card"事件，内容为补全后的卡片JSON，随后结束
+     * 卡片不在等待补全时立即推送当前内容；补全超时则不推送直接结束，客户端可重新获取卡片
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> cardEvents(@PathVariable String id) {
+        if (messageCardService.getCardById(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(userEnrichmentTimeoutMs + CARD_EVENTS_GRACE_MS);
+        Disposable subscription = messageCardService.awaitCompletedCard(id)
+                .timeout(Duration.ofMillis(userEnrichmentTimeoutMs), Mono.empty())
+                .subscribe(json -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("card").data(new String(json, StandardCharsets.UTF_8)));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Client disconnected before card {} was sent", id);
+                    }
+                }, emitter::completeWithError, emitter::complete);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        return ResponseEntity.ok(emitter);
+    }
+    
     /**
      * 保存卡片
      */
@@ -13,4 +13,13 @@ import lombok.NoArgsConstructor;
 public class ChatRequest {
     private String message;
     private String domain;
+    
+    // Set to true to bypass the LLM response cache for personalized turns
+    private Boolean noCache;
+    
+    // Set to true to embed the cards referenced in the reply, saving one request per card
+    private Boolean includeCards;
+    
+    // Set to true to return per-stage timings in the response
+    private Boolean debug;
 } 
\ No newline at end of file
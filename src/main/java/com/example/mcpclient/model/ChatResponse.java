@@ -1,9 +1,13 @@
 package com.example.mcpclient.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.util.RawValue;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * Represents a response from the LLM chat service
  */
@@ -14,8 +18,21 @@ public class ChatResponse {
     private String message;
     private boolean success = true;
     
+    // Serialized cards referenced by @cards markup in the message, keyed by card ID (only when requested)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, RawValue> cards;
+    
+    // Per-stage timings in milliseconds, only returned for debug requests
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Double> timings;
+    
     public ChatResponse(String message) {
         this.message = message;
         this.success = true;
     }
+    
+    public ChatResponse(String message, boolean success) {
+        this.message = message;
+        this.success = success;
+    }
 } 
\ No newline at end of file
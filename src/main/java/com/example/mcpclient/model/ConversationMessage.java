@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class ConversationMessage {
     private String id;
-    private String role; // "user" or "assistant"
+    private String role; // "user", "assistant", or "system" for the summary of compacted turns
     private String content;
     private String domain;
     private LocalDateTime timestamp;
@@ -38,4 +38,14 @@ public class ConversationMessage {
                 LocalDateTime.now()
         );
     }
+    
+    public static ConversationMessage summaryMessage(String content) {
+        return new ConversationMessage(
+                java.util.UUID.randomUUID().toString(),
+                "system",
+                content,
+                null,
+                LocalDateTime.now()
+        );
+    }
 } 
\ No newline at end of file
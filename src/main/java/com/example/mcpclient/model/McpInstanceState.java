@@ -0,0 +1,20 @@
+package com.example.mcpclient.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Health of an MCP service instance as observed from tool calls, next to the Nacos health flag
+ */
+@Data
+public class McpInstanceState {
+    private String address;
+    private boolean healthy;
+    private boolean ejected;
+    private Instant ejectedUntil;
+    private int ejectionCount;
+    private long requests;
+    private double errorRate;
+    private double latencyMs;
+}
@@ -17,4 +17,6 @@ public class McpServiceInfo {
     private String mcpVersion;
     private List<Instance> instances = new ArrayList<>();
     private List<McpToolInfo> tools = new ArrayList<>();
+    // Observed state of each instance, only filled in for the services API
+    private List<McpInstanceState> instanceStates;
 } 
\ No newline at end of file
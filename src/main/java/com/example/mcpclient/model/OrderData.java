@@ -0,0 +1,23 @@
+package com.example.mcpclient.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+/**
+ * tradeCenter返回的订单数据，只包含创建订单卡片所需的字段
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderData {
+    private Long id;
+    private String orderNo;
+    private Long userId;
+    private Integer status;
+    // 可能是字符串或日期数组，保留原始节点由调用方解析
+    private JsonNode createdAt;
+    private Double amount;
+    private String address;
+    private Long itemId;
+    private Integer quantity;
+}
@@ -17,7 +17,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 public class OrderMessageCard extends MessageCard {
     // 订单特有信息
     private String orderNumber;
@@ -31,7 +31,10 @@ public class OrderMessageCard extends MessageCard {
     private String userName;
     private String userPhone;
     private String userAddress;
-    
+
+    // 用户信息仍在异步补全中，补全后卡片按同一ID更新，可通过SSE订阅或重新获取
+    private Boolean userPending;
+
     @Override
     public String getType() {
         return "order";
@@ -0,0 +1,92 @@
+package com.example.mcpclient.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Global admission control for chat turns.
+ * At most {@code chat.admission.max-concurrent} turns run at once; further turns wait in a bounded FIFO queue
+ * for at most {@code chat.admission.max-wait-ms}. A turn that finds the queue full is rejected at once, and a
+ * turn that waits too long is rejected when its wait ends, both with {@link ChatRejectedException}. The
+ * suggested retry delay is the time the queue takes to drain at the average turn duration.
+ */
+@Service
+@Slf4j
+public class ChatAdmissionLimiter {
+
+    // Weight of the latest turn in the average turn duration
+    private static final double DURATION_WEIGHT = 0.1;
+
+    private final int maxConcurrent;
+    private final Duration maxWait;
+    private final MeterRegistry meterRegistry;
+    private final PermitQueue permits;
+
+    // Guarded by permits
+    private double averageTurnNanos;
+
+    public ChatAdmissionLimiter(
+            @Value("${chat.admission.max-concurrent:50}") int maxConcurrent,
+            @Value("${chat.admission.max-queue-size:100}") int maxQueueSize,
+            @Value("${chat.admission.max-wait-ms:1000}") long maxWaitMs,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+        this.meterRegistry = meterRegistry;
+        this.permits = new PermitQueue(() -> this.maxConcurrent, maxQueueSize, maxWait, this::reject);
+
+        Gauge.builder("chat.admission.inflight", this, ChatAdmissionLimiter::getInFlight)
+                .description("Chat turns currently admitted")
+                .register(meterRegistry);
+        Gauge.builder("chat.admission.queued", this, ChatAdmissionLimiter::getQueued)
+                .description("Chat turns waiting for admission")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the turn once it is admitted, holding its slot until the turn completes, fails or is cancelled.
+     * Fails with {@link ChatRejectedException} when the turn is not admitted.
+     */
+    public <T> Mono<T> admit(Mono<T> turn) {
+        return permits.acquire().flatMap(permit -> turn.doFinally(signal -> permit.release(this::recordTurn)));
+    }
+
+    /**
+     * Fold a finished turn into the average turn duration. Called holding the permit queue's monitor.
+     */
+    private void recordTurn(long turnNanos) {
+        averageTurnNanos = averageTurnNanos == 0
+                ? turnNanos
+                : averageTurnNanos + DURATION_WEIGHT * (turnNanos - averageTurnNanos);
+    }
+
+    /**
+     * A rejection suggesting to retry once the turns ahead have drained, at the average turn duration.
+     * Called holding the permit queue's monitor.
+     */
+    private ChatRejectedException reject(String reason) {
+        meterRegistry.counter("chat.rejected", "reason", reason).increment();
+        int inFlight = permits.getInFlight();
+        int queued = permits.getQueued();
+        long drainNanos = (long) (averageTurnNanos * (inFlight + queued) / maxConcurrent);
+        Duration retryAfter = Duration.ofNanos(Math.max(drainNanos, maxWait.toNanos()));
+        log.debug("Rejected chat turn ({}): {} in flight, {} queued, retry after {}ms",
+                reason, inFlight, queued, retryAfter.toMillis());
+        return new ChatRejectedException(reason, retryAfter, "The assistant is busy right now, please try again in a moment.");
+    }
+
+    public int getInFlight() {
+        return permits.getInFlight();
+    }
+
+    public int getQueued() {
+        return permits.getQueued();
+    }
+}
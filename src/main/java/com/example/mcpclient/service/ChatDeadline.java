@@ -0,0 +1,96 @@
+package com.example.mcpclient.service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Time budget of a chat turn. Every stage of the turn (card detection, MCP calls, the DeepSeek call) gets
+ * what is left of it, and downstream MCP services are told the remaining time in the {@link #HEADER} header.
+ * Travels with the chat Mono in the Reactor context under {@link #CONTEXT_KEY}, and is bound to the
+ * worker thread while a turn is prepared, like {@link ChatTimings}.
+ */
+public class ChatDeadline {
+
+    public static final String CONTEXT_KEY = ChatDeadline.class.getName();
+
+    /**
+     * Header carrying the remaining budget in milliseconds, relative so that it does not depend on clock skew
+     */
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<ChatDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private ChatDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * A deadline the given time from now
+     */
+    public static ChatDeadline after(Duration budget) {
+        return new ChatDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * A deadline the given time from now, shortened to the budget requested by the caller, if any
+     *
+     * @param requestedMs The remaining budget sent by the caller in {@link #HEADER}, or null
+     */
+    public static ChatDeadline after(Duration budget, Long requestedMs) {
+        if (requestedMs != null && requestedMs >= 0 && requestedMs < budget.toMillis()) {
+            return after(Duration.ofMillis(requestedMs));
+        }
+        return after(budget);
+    }
+
+    /**
+     * The deadline bound to the current thread, or null outside of a chat turn
+     */
+    public static ChatDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run a task with this deadline bound to the current thread
+     */
+    public <T> T callBound(Callable<T> task) throws Exception {
+        ChatDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Time left until the deadline, zero once it has passed
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * The given timeout, shortened to the time left until the deadline
+     */
+    public long boundMillis(long timeoutMs) {
+        return Math.min(timeoutMs, remaining().toMillis());
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * The deadline as a {@link System#nanoTime()} value
+     */
+    public long nanoTime() {
+        return deadlineNanos;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.mcpclient.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiting of chat turns per user, or per session for anonymous clients.
+ * A bucket holds up to {@code chat.rate-limit.capacity} turns and refills at
+ * {@code chat.rate-limit.refill-per-minute}. Each bucket is a single {@link AtomicLong}: the time at which it
+ * will be full again (the generic cell rate algorithm), updated without locking. Buckets expire once they
+ * have been idle long enough to be full, so forgetting them changes nothing, and their number is bounded.
+ */
+@Service
+@Slf4j
+public class ChatRateLimiter {
+
+    static final String REASON = "rate_limit";
+
+    private final boolean enabled;
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final MeterRegistry meterRegistry;
+
+    private LongSupplier nanoTime = System::nanoTime;
+
+    public ChatRateLimiter(
+            @Value("${chat.rate-limit.enabled:true}") boolean enabled,
+            @Value("${chat.rate-limit.capacity:10}") int capacity,
+            @Value("${chat.rate-limit.refill-per-minute:20}") int refillPerMinute,
+            @Value("${chat.rate-limit.max-buckets:100000}") long maxBuckets,
+            MeterRegistry meterRegistry
+    ) {
+        this.enabled = enabled;
+        this.refillIntervalNanos = Duration.ofMinutes(1).toNanos() / Math.max(1, refillPerMinute);
+        this.burstNanos = (Math.max(1, capacity) - 1) * refillIntervalNanos;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(burstNanos + refillIntervalNanos))
+                .maximumSize(maxBuckets)
+                .build();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("chat.rate-limit.buckets", buckets, Cache::estimatedSize)
+                .description("Number of chat rate limit buckets held in memory")
+                .register(meterRegistry);
+        log.info("Chat rate limit {} (capacity={}, refillPerMinute={})",
+                enabled ? "enabled" : "disabled", capacity, refillPerMinute);
+    }
+
+    /**
+     * Take one turn from the key's bucket.
+     *
+     * @param key The user or session the turn is for
+     * @throws ChatRejectedException when the bucket is empty, with the time until it holds a turn again
+     */
+    public void acquire(String key) {
+        if (!enabled) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long start = current - now > 0 ? current : now;
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                meterRegistry.counter("chat.rejected", "reason", REASON).increment();
+                throw new ChatRejectedException(REASON, Duration.ofNanos(wait),
+                        "You are sending messages too quickly, please wait a moment.");
+            }
+            if (fullAt.compareAndSet(current, start + refillIntervalNanos)) {
+                return;
+            }
+        }
+    }
+}
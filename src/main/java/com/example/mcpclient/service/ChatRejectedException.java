@@ -0,0 +1,33 @@
+package com.example.mcpclient.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a chat turn is rejected before it starts, because its session is over its rate limit or the
+ * server is already answering as many turns as it admits. Answered with 429 and a {@code Retry-After} header.
+ */
+public class ChatRejectedException extends RuntimeException {
+
+    private final String reason;
+    private final Duration retryAfter;
+
+    public ChatRejectedException(String reason, Duration retryAfter, String message) {
+        super(message);
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Why the turn was rejected, as tagged on the {@code chat.rejected} counter
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * When the client may try again
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.mcpclient.service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-request timings of the stages of a chat turn, reported in the {@code Server-Timing} header.
+ * Travels with the chat Mono in the Reactor context under {@link #CONTEXT_KEY}, and is bound to the
+ * worker thread while a turn is prepared so that nested calls, such as MCP tool lookups, can add to it.
+ */
+public class ChatTimings {
+
+    public static final String CONTEXT_KEY = ChatTimings.class.getName();
+
+    public static final String TOTAL = "total";
+
+    private static final ThreadLocal<ChatTimings> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+
+    // Accumulated duration per stage, in the order the stages first ran
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+
+    /**
+     * The timings bound to the current thread, or null outside of a chat turn
+     */
+    public static ChatTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run a task with these timings bound to the current thread
+     */
+    public <T> T callBound(Callable<T> task) throws Exception {
+        ChatTimings previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Add the duration of a stage; repeated stages are summed
+     */
+    public synchronized void record(String stage, long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * Stage durations in milliseconds, followed by the total time since the timings were created
+     */
+    public synchronized Map<String, Double> toMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        stageNanos.forEach((stage, nanos) -> millis.put(stage, toMillis(nanos)));
+        millis.put(TOTAL, toMillis(System.nanoTime() - startNanos));
+        return millis;
+    }
+
+    /**
+     * Format the timings as a Server-Timing header value, e.g. {@code prompt_build;dur=1.2, total;dur=830.5}
+     */
+    public String toServerTiming() {
+        return toMillis().entrySet().stream()
+                .map(entry -> String.format(Locale.ROOT, "%s;dur=%.1f", entry.getKey(), entry.getValue()))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 10) / 10.0;
+    }
+}
@@ -1,30 +1,89 @@
 package com.example.mcpclient.service;
 
 import com.example.mcpclient.model.ConversationMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Service to manage conversation history
+ * Service to manage conversation history.
+ * Prompts get a window of the history bounded by estimated tokens rather than by message count. Older turns
+ * are compacted in the background: DeepSeek summarizes them, and the summary takes their place in later
+ * prompts, while the stored messages stay available to the history endpoint until they are trimmed.
  */
 @Service
 @Slf4j
 public class ConversationService {
 
+    // Estimated tokens of the role and framing DeepSeek adds to every message
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
     // Map of sessionId to conversation history
-    private final Map<String, List<ConversationMessage>> conversations = new ConcurrentHashMap<>();
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
     
     // Maximum number of messages to keep in history per conversation
     @Value("${conversation.max-history-length:10}")
     private int maxHistoryLength;
     
+    // Estimated tokens of history, summary included, sent with each prompt
+    @Value("${conversation.history-token-budget:2000}")
+    private int historyTokenBudget;
+    
+    @Value("${conversation.compaction.enabled:true}")
+    private boolean compactionEnabled;
+    
+    // Compact once the messages not yet covered by the summary outgrow this many estimated tokens
+    @Value("${conversation.compaction.threshold-tokens:1500}")
+    private int compactionThresholdTokens;
+    
+    // Most recent messages that are always sent as they are, never summarized
+    @Value("${conversation.compaction.keep-recent:4}")
+    private int compactionKeepRecent;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+    
+    /**
+     * The messages of a session with their estimated tokens, and the summary of its compacted turns.
+     * Guarded by its own monitor, as compaction completes on another thread than the chat turns.
+     */
+    private static class Conversation {
+        private final List<ConversationMessage> messages = new ArrayList<>();
+        private final List<Integer> tokens = new ArrayList<>();
+        // Number of leading messages covered by the summary, and left out of prompts
+        private int summarized;
+        private ConversationMessage summary;
+        private int summaryTokens;
+        private boolean compacting;
+    }
+    
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chat.conversations", conversations, Map::size)
+                .description("Number of conversations held in memory")
+                .register(meterRegistry);
+        Gauge.builder("chat.conversation.messages", conversations,
+                        map -> map.values().stream().mapToInt(conversation -> conversation.messages.size()).sum())
+                .description("Number of conversation messages held in memory")
+                .register(meterRegistry);
+    }
+    
     /**
      * Add a user message to a conversation
      */
@@ -43,29 +102,186 @@ public class ConversationService {
         return message;
     }
     
+    /**
+     * Remove a message from a conversation, such as the question of a turn that ended without an answer.
+     * Messages already trimmed, summarized or being summarized are left alone.
+     */
+    public void removeMessage(String sessionId, ConversationMessage message) {
+        Conversation conversation = conversations.get(sessionId);
+        if (conversation == null) {
+            return;
+        }
+        synchronized (conversation) {
+            // A running compaction covers at most the messages before the most recent ones
+            int first = conversation.compacting
+                    ? Math.max(conversation.summarized, conversation.messages.size() - compactionKeepRecent)
+                    : conversation.summarized;
+            for (int i = conversation.messages.size() - 1; i >= first; i--) {
+                if (conversation.messages.get(i) == message) {
+                    conversation.messages.remove(i);
+                    conversation.tokens.remove(i);
+                    log.debug("Removed message from conversation {}: {}", sessionId, message.getContent());
+                    return;
+                }
+            }
+        }
+    }
+    
     /**
      * Get the conversation history for a session
      */
     public List<ConversationMessage> getConversationHistory(String sessionId) {
-        return conversations.getOrDefault(sessionId, new ArrayList<>());
+        Conversation conversation = conversations.get(sessionId);
+        if (conversation == null) {
+            return new ArrayList<>();
+        }
+        synchronized (conversation) {
+            return new ArrayList<>(conversation.messages);
+        }
+    }
+    
+    /**
+     * Get the history to send with a prompt: the summary of compacted turns, if any, as a system message,
+     * followed by the most recent messages that fit into {@code conversation.history-token-budget} estimated
+     * tokens. The latest message is always included, however long it is.
+     */
+    public List<ConversationMessage> getPromptHistory(String sessionId) {
+        Conversation conversation = conversations.get(sessionId);
+        if (conversation == null) {
+            return new ArrayList<>();
+        }
+        List<ConversationMessage> window = new ArrayList<>();
+        int windowTokens;
+        synchronized (conversation) {
+            int end = conversation.messages.size();
+            int start = end;
+            windowTokens = conversation.summaryTokens;
+            while (start > conversation.summarized) {
+                int messageTokens = conversation.tokens.get(start - 1);
+                if (start < end && windowTokens + messageTokens > historyTokenBudget) {
+                    break;
+                }
+                windowTokens += messageTokens;
+                start--;
+            }
+            if (conversation.summary != null) {
+                window.add(conversation.summary);
+            }
+            window.addAll(conversation.messages.subList(start, end));
+        }
+        meterRegistry.summary("chat.conversation.prompt.tokens").record(windowTokens);
+        return window;
     }
     
     /**
      * Add a message to a conversation, creating the conversation if it doesn't exist
      */
     private void addMessageToConversation(String sessionId, ConversationMessage message) {
-        List<ConversationMessage> history = conversations.computeIfAbsent(sessionId, k -> new ArrayList<>());
-        
-        // Add the new message
-        history.add(message);
+        Conversation conversation = conversations.computeIfAbsent(sessionId, k -> new Conversation());
         
-        // Trim history if it exceeds maximum length
-        if (history.size() > maxHistoryLength) {
-            history = history.subList(history.size() - maxHistoryLength, history.size());
-            conversations.put(sessionId, history);
+        boolean compact;
+        synchronized (conversation) {
+            // Add the new message
+            conversation.messages.add(message);
+            conversation.tokens.add(TokenEstimator.estimate(message.getContent()) + MESSAGE_OVERHEAD_TOKENS);
+            
+            // Trim history if it exceeds maximum length, dropping the oldest messages in place
+            // (keeping a subList view instead would retain every message and slow down each later append)
+            int excess = conversation.messages.size() - maxHistoryLength;
+            if (excess > 0) {
+                conversation.messages.subList(0, excess).clear();
+                conversation.tokens.subList(0, excess).clear();
+                conversation.summarized = Math.max(0, conversation.summarized - excess);
+            }
+            
+            compact = compactionDue(conversation);
+            conversation.compacting |= compact;
         }
         
         log.debug("Added message to conversation {}: {}", sessionId, message.getContent());
+        if (compact) {
+            compact(sessionId, conversation);
+        }
+    }
+    
+    /**
+     * Whether the messages not yet covered by the summary should be compacted: when they outgrow the
+     * threshold, or when the oldest of them is about to be trimmed. Called holding the conversation's monitor.
+     */
+    private boolean compactionDue(Conversation conversation) {
+        if (!compactionEnabled || conversation.compacting
+                || conversation.messages.size() - conversation.summarized <= compactionKeepRecent) {
+            return false;
+        }
+        if (conversation.summarized == 0 && conversation.messages.size() >= maxHistoryLength) {
+            return true;
+        }
+        int unsummarizedTokens = 0;
+        for (int i = conversation.summarized; i < conversation.tokens.size(); i++) {
+            unsummarizedTokens += conversation.tokens.get(i);
+        }
+        return unsummarizedTokens > compactionThresholdTokens;
+    }
+    
+    /**
+     * Summarize the messages not yet covered by the summary, except the most recent ones, off the request
+     * thread. The summary replaces them in later prompts once DeepSeek has answered; if it fails, the next
+     * message added to the conversation tries again.
+     */
+    private void compact(String sessionId, Conversation conversation) {
+        String previousSummary;
+        List<ConversationMessage> turns;
+        synchronized (conversation) {
+            previousSummary = conversation.summary != null ? conversation.summary.getContent() : null;
+            turns = new ArrayList<>(conversation.messages.subList(conversation.summarized,
+                    conversation.messages.size() - compactionKeepRecent));
+        }
+        ConversationMessage lastTurn = turns.get(turns.size() - 1);
+        
+        long start = System.nanoTime();
+        Mono.defer(() -> conversationSummarizer.summarize(previousSummary, turns))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("DeepSeek returned no summary")))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(summary -> {
+                    applySummary(conversation, lastTurn, summary);
+                    recordCompaction(start, "success");
+                    log.debug("Compacted {} messages of conversation {} into a summary of {} characters",
+                            turns.size(), sessionId, summary.length());
+                }, error -> {
+                    synchronized (conversation) {
+                        conversation.compacting = false;
+                    }
+                    recordCompaction(start, "failure");
+                    log.warn("Failed to compact conversation {}: {}", sessionId, error.toString());
+                });
+    }
+    
+    /**
+     * Replace the messages up to the last summarized one with the summary
+     */
+    private void applySummary(Conversation conversation, ConversationMessage lastTurn, String summary) {
+        synchronized (conversation) {
+            // If the summarized messages have been trimmed meanwhile, all remaining messages are newer
+            int summarized = 0;
+            for (int i = conversation.messages.size() - 1; i >= 0; i--) {
+                if (conversation.messages.get(i) == lastTurn) {
+                    summarized = i + 1;
+                    break;
+                }
+            }
+            conversation.summarized = summarized;
+            conversation.summary = ConversationMessage.summaryMessage(summary);
+            conversation.summaryTokens = TokenEstimator.estimate(summary) + MESSAGE_OVERHEAD_TOKENS;
+            conversation.compacting = false;
+        }
+    }
+    
+    private void recordCompaction(long startNanos, String outcome) {
+        Timer.builder("chat.conversation.compaction")
+                .description("Background summarization of older conversation turns")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
     }
     
     /**
@@ -75,4 +291,4 @@ public class ConversationService {
         conversations.remove(sessionId);
         log.debug("Cleared conversation history for session {}", sessionId);
     }
-} 
\ No newline at end of file
+}
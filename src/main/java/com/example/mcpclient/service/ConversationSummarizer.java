@@ -0,0 +1,69 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ConversationMessage;
+import com.example.mcpclient.service.deepseek.DeepSeekClient;
+import com.example.mcpclient.service.deepseek.DeepSeekMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Asks DeepSeek for a short summary of the older turns of a conversation, so that they can be replaced by
+ * the summary in later prompts.
+ */
+@Service
+public class ConversationSummarizer {
+
+    // Longer messages, such as pasted logs, are cut before they are sent for summarization
+    private static final int MAX_MESSAGE_CHARS = 2000;
+
+    private static final String INSTRUCTIONS = """
+            You summarize the earlier part of a conversation between a user and an AI assistant of an e-commerce \
+            platform, so that the assistant can continue the conversation from the summary alone.
+            Keep order numbers, tracking numbers, user IDs and other identifiers, the user's requests and the \
+            answers given, and any open questions. Leave out greetings and pleasantries.
+            Write in the language of the conversation, in at most %d words, without any preamble.""";
+
+    @Autowired
+    private DeepSeekClient deepSeekClient;
+
+    @Value("${conversation.compaction.summary-max-words:150}")
+    private int summaryMaxWords;
+
+    /**
+     * Summarize the turns, together with the summary of the turns before them if there is one
+     *
+     * @param previousSummary The summary the turns follow, or null
+     * @param turns The turns to summarize, oldest first
+     * @return The new summary, empty if DeepSeek returned none
+     */
+    public Mono<String> summarize(String previousSummary, List<ConversationMessage> turns) {
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null) {
+            transcript.append("Summary of the conversation so far:\n").append(previousSummary).append("\n\n");
+        }
+        transcript.append("Conversation:\n");
+        for (ConversationMessage turn : turns) {
+            String content = turn.getContent() == null ? "" : turn.getContent();
+            if (content.length() > MAX_MESSAGE_CHARS) {
+                content = content.substring(0, MAX_MESSAGE_CHARS) + " [...]";
+            }
+            transcript.append("user".equals(turn.getRole()) ? "User: " : "Assistant: ")
+                    .append(content).append('\n');
+        }
+
+        return deepSeekClient.chatCompletion(List.of(
+                        DeepSeekMessage.systemMessage(INSTRUCTIONS.formatted(summaryMaxWords)),
+                        DeepSeekMessage.userMessage(transcript.toString())))
+                .flatMap(response -> {
+                    if (response.getChoices() == null || response.getChoices().isEmpty()) {
+                        return Mono.empty();
+                    }
+                    String summary = response.getChoices().get(0).getMessage().getContent();
+                    return summary == null || summary.isBlank() ? Mono.empty() : Mono.just(summary.strip());
+                });
+    }
+}
@@ -8,16 +8,44 @@ import com.example.mcpclient.model.McpToolInfo;
 import com.example.mcpclient.model.MessageCard;
 import com.example.mcpclient.service.deepseek.DeepSeekClient;
 import com.example.mcpclient.service.deepseek.DeepSeekMessage;
+import com.example.mcpclient.service.deepseek.DeepSeekOverloadedException;
+import com.example.mcpclient.service.jfr.ChatTurnEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +55,40 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LlmChatService {
 
+    private static final String NO_RESPONSE = "No response generated";
+    
+    // Stages of a chat turn recorded by the chat.stage timer
+    private static final String STAGE_CARD_DETECTION = "card_detection";
+    private static final String STAGE_DOMAIN_DETECTION = "domain_detection";
+    private static final String STAGE_PROMPT_BUILD = "prompt_build";
+    private static final String STAGE_DEEPSEEK_CALL = "deepseek_call";
+    private static final String STAGE_HISTORY_UPDATE = "history_update";
+    
+    // Instructions at the start of every system prompt, followed by the tools
+    private static final String PROMPT_GUIDELINES = """
+            You are an AI assistant with access to specialized MCP tools in various business domains.
+            Your task is to help the user by providing information or performing actions using these tools.
+            
+            Guidelines for tool selection and response:
+            1. First determine which domain is most relevant to the user's query.
+            2. Then select the most appropriate tool(s) based on their descriptions.
+            3. Explain how the selected tool(s) can address the user's query.
+            4. If the domain is unclear, analyze the content to determine the most appropriate domain.
+            5. For queries spanning multiple domains, explain which tools from each domain could be helpful.
+            6. Do not invent tool capabilities beyond what is described in the tool information.
+            7. If no suitable tools exist for a query, explain that you don't have access to tools for that specific request.
+            8. Keep your responses focused, clear, and helpful.
+            9. Maintain context of the conversation history and refer back to previous questions when relevant.
+            10. If the user's query relates to orders, logistics or package tracking, suggest using the special message card feature.
+            
+            Format your response as a helpful AI assistant integrating knowledge about the available tools.
+            
+            """;
+    
+    private static final Comparator<McpToolInfo> TOOL_ORDER = Comparator
+            .comparing(McpToolInfo::getServiceName, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(McpToolInfo::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @Autowired
     private DeepSeekClient deepSeekClient;
     
@@ -42,95 +104,423 @@ public class LlmChatService {
     @Autowired
     private MessageCardService messageCardService;
     
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+    
+    @Autowired
+    private ToolRetrievalIndex toolRetrievalIndex;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ObservationRegistry observationRegistry;
+    
+    // Start the DeepSeek call before card detection has finished its MCP lookups
+    @Value("${chat.speculation.enabled:true}")
+    private boolean speculationEnabled;
+    
+    // How long card detection may still be running after the prompt is ready before the DeepSeek call starts
+    @Value("${chat.speculation.delay-ms:200}")
+    private long speculationDelayMs;
+    
+    // In-flight chat turns per session, signalled when a newer message supersedes them
+    private final Map<String, Sinks.One<Boolean>> inFlightTurns = new ConcurrentHashMap<>();
+    
+    // Static system prompt prefix together with the tool list it was built from
+    private volatile StaticPrompt staticPrompt;
+    
+    private record StaticPrompt(List<McpToolInfo> tools, String text) {
+    }
+    
+    // Tools grouped by domain at a registry version, see McpServiceDiscoveryService#getRegistryVersion()
+    private volatile GroupedTools groupedTools;
+    
+    private record GroupedTools(long registryVersion, Map<String, List<McpToolInfo>> toolsByDomain) {
+    }
+    
     /**
      * Process a chat request by generating a response using DeepSeek AI and available MCP tools.
+     * Blocks until the response is available, see {@link #processChatAsync(ChatRequest, String)}.
      * 
      * @param request The chat request from the user
      * @param sessionId The session ID for conversation history
      * @return A response containing the LLM's message and used tools
      */
     public ChatResponse processChat(ChatRequest request, String sessionId) {
-        try {
-            log.info("Processing chat request from session {}: {}", sessionId, request.getMessage());
-            
-            // Add user message to conversation history
-            conversationService.addUserMessage(sessionId, request.getMessage(), request.getDomain());
-            
-            // 检测是否包含需要卡片展示的内容
-            MessageCard card = messageCardService.detectCardFromMessage(request.getMessage());
-            if (card != null) {
-                log.info("Detected message card from user message: {}", card.getType());
-                // 保存卡片
-                messageCardService.addCard(card);
-                
-                // 使用卡片ID创建一个特殊标记，插入到响应中
-                String cardMarkup = generateCardMarkup(card);
-                
-                // 添加助手回复
-                String response = "我已为您创建了以下信息卡片：\n\n" + cardMarkup;
-                conversationService.addAssistantMessage(sessionId, response, request.getDomain());
-                
-                return new ChatResponse(response);
-            }
-            
-            // Get conversation history
-            List<ConversationMessage> history = conversationService.getConversationHistory(sessionId);
-            
-            // If domain is specified in the request, use it; otherwise try to determine from the message
-            String domain = request.getDomain();
-            if (domain == null || domain.isEmpty()) {
-                domain = determineDomainFromMessage(request.getMessage());
-                log.debug("Determined domain from message: {}", domain);
+        return processChatAsync(request, sessionId).block();
+    }
+    
+    /**
+     * Process a chat request asynchronously.
+     * Cancelling the returned Mono (for example when the client disconnects) cancels the outstanding
+     * DeepSeek call, and a newer request in the same session cancels this one.
+     * When the subscriber puts a {@link ChatDeadline} in the context, the turn is answered with an error
+     * message once it passes, and MCP and DeepSeek calls are bounded by the time left.
+     * The user message of a turn that ends without an answer (cancelled, superseded, past its deadline or
+     * failed) is removed from the conversation history, so that later prompts do not carry it unanswered.
+     * 
+     * @param request The chat request from the user
+     * @param sessionId The session ID for conversation history
+     * @return A Mono emitting the response containing the LLM's message
+     */
+    public Mono<ChatResponse> processChatAsync(ChatRequest request, String sessionId) {
+        Sinks.One<Boolean> superseded = Sinks.one();
+        Sinks.One<Boolean> previous = inFlightTurns.put(sessionId, superseded);
+        if (previous != null) {
+            log.info("Cancelling in-flight chat request for session {}, superseded by a newer message", sessionId);
+            previous.tryEmitValue(true);
+        }
+        
+        ChatTurnEvent event = new ChatTurnEvent();
+        event.begin();
+        AtomicReference<ConversationMessage> userMessage = new AtomicReference<>();
+        
+        return Mono.deferContextual(context -> {
+                    // Stage timings of this request, provided by the caller to report them in Server-Timing
+                    ChatTimings timings = context.getOrDefault(ChatTimings.CONTEXT_KEY, new ChatTimings());
+                    // Time budget of this request, provided by the caller; MCP calls made while preparing the turn
+                    // see it bound to the thread, and the DeepSeek call reads it from the context
+                    ChatDeadline deadline = context.getOrDefault(ChatDeadline.CONTEXT_KEY, null);
+                    userMessage.set(recordUserMessage(request, sessionId, timings));
+                    // Card detection may block on MCP lookups, so it runs next to the preparation of the LLM call
+                    Mono<Optional<MessageCard>> card = Mono
+                            .fromCallable(bound(() -> detectCard(request, timings), timings, deadline))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .onErrorResume(e -> {
+                                log.warn("Card detection failed for session {}, answering with the LLM", sessionId, e);
+                                return Mono.just(Optional.empty());
+                            })
+                            .cache();
+                    Mono<PreparedTurn> prepared = Mono
+                            .fromCallable(bound(() -> prepareTurn(request, sessionId, timings), timings, deadline))
+                            .subscribeOn(Schedulers.boundedElastic());
+                    Mono<ChatResponse> turn = answer(card, prepared, request, sessionId, timings)
+                            .map(response -> Boolean.TRUE.equals(request.getIncludeCards()) ? embedCards(response) : response)
+                            .map(response -> {
+                                if (Boolean.TRUE.equals(request.getDebug())) {
+                                    response.setTimings(timings.toMillis());
+                                }
+                                return response;
+                            });
+                    return deadline != null ? turn.timeout(deadline.remaining()) : turn;
+                })
+                .takeUntilOther(superseded.asMono())
+                .switchIfEmpty(Mono.fromSupplier(() ->
+                        new ChatResponse("This request was cancelled because a newer message was sent.", false)))
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("Chat request for session {} exceeded its deadline: {}", sessionId, e.getMessage());
+                    meterRegistry.counter("chat.deadline.exceeded").increment();
+                    return Mono.just(new ChatResponse("Sorry, this is taking longer than expected. Please try again.", false));
+                })
+                .onErrorResume(DeepSeekOverloadedException.class, e -> {
+                    log.warn("DeepSeek call rejected for session {}: {}", sessionId, e.getMessage());
+                    return Mono.just(new ChatResponse("The assistant is busy right now, please try again in a moment.", false));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing chat request", e);
+                    return Mono.just(new ChatResponse("An error occurred while processing your request: " + e.getMessage(), false));
+                })
+                .doOnSuccess(response -> {
+                    if (!response.isSuccess()) {
+                        removeUnanswered(sessionId, userMessage.get());
+                    }
+                    commitTurnEvent(event, request, sessionId, response.isSuccess() ? "success" : "failed");
+                })
+                .doOnCancel(() -> {
+                    log.info("Chat request for session {} was cancelled", sessionId);
+                    removeUnanswered(sessionId, userMessage.get());
+                    commitTurnEvent(event, request, sessionId, "cancelled");
+                })
+                .doFinally(signal -> inFlightTurns.remove(sessionId, superseded));
+    }
+    
+    /**
+     * Bind the request's timings and deadline to the thread running the task
+     */
+    private static <T> Callable<T> bound(Callable<T> task, ChatTimings timings, ChatDeadline deadline) {
+        Callable<T> withTimings = () -> timings.callBound(task);
+        return deadline != null ? () -> deadline.callBound(withTimings) : withTimings;
+    }
+    
+    /**
+     * Add the user message to the conversation history before the turn is answered
+     */
+    private ConversationMessage recordUserMessage(ChatRequest request, String sessionId, ChatTimings timings) {
+        log.info("Processing chat request from session {}: {}", sessionId, request.getMessage());
+        long stageStart = System.nanoTime();
+        ConversationMessage message = conversationService.addUserMessage(sessionId, request.getMessage(), request.getDomain());
+        recordStage(timings, STAGE_HISTORY_UPDATE, stageStart);
+        return message;
+    }
+    
+    /**
+     * Remove the user message of a turn that ended without an answer from the conversation history
+     */
+    private void removeUnanswered(String sessionId, ConversationMessage userMessage) {
+        if (userMessage != null) {
+            conversationService.removeMessage(sessionId, userMessage);
+        }
+    }
+    
+    /**
+     * Detect and save the message card the user message asks for, if any
+     */
+    private Optional<MessageCard> detectCard(ChatRequest request, ChatTimings timings) {
+        // 检测是否包含需要卡片展示的内容
+        long stageStart = System.nanoTime();
+        MessageCard card = messageCardService.detectCardFromMessage(request.getMessage());
+        if (card != null) {
+            log.info("Detected message card from user message: {}", card.getType());
+            tagCurrentSpan("chat.card", card.getType());
+            // 保存卡片
+            messageCardService.addCard(card);
+        }
+        recordStage(timings, STAGE_CARD_DETECTION, stageStart);
+        return Optional.ofNullable(card);
+    }
+    
+    /**
+     * Answer the turn with a detected card
+     */
+    private ChatResponse answerWithCard(MessageCard card, ChatRequest request, String sessionId, ChatTimings timings) {
+        // 使用卡片ID创建一个特殊标记，插入到响应中
+        String cardMarkup = generateCardMarkup(card);
+        
+        // 添加助手回复
+        String response = "我已为您创建了以下信息卡片：\n\n" + cardMarkup;
+        long stageStart = System.nanoTime();
+        conversationService.addAssistantMessage(sessionId, response, request.getDomain());
+        recordStage(timings, STAGE_HISTORY_UPDATE, stageStart);
+        
+        return new ChatResponse(response);
+    }
+    
+    /**
+     * Answer with the detected card if there is one, otherwise with the LLM or the response cache.
+     * The DeepSeek call starts once card detection has found no card or, while detection is still waiting on
+     * MCP lookups, speculatively {@code chat.speculation.delay-ms} after the prompt is ready. A card wins over
+     * an LLM answer, and cancels the DeepSeek call if it is still in flight. A failed DeepSeek call or prompt
+     * only fails the turn once detection has found no card.
+     */
+    private Mono<ChatResponse> answer(Mono<Optional<MessageCard>> card, Mono<PreparedTurn> prepared,
+                                      ChatRequest request, String sessionId, ChatTimings timings) {
+        AtomicBoolean speculated = new AtomicBoolean();
+        Mono<Boolean> noCard = card.flatMap(detected -> detected.isEmpty() ? Mono.just(true) : Mono.never());
+        
+        Mono<ChatResponse> cardAnswer = card.flatMap(detected -> {
+            if (detected.isEmpty()) {
+                return Mono.never();
             }
-            
-            // Get tools organized by domain
-            Map<String, List<McpToolInfo>> toolsByDomain = getToolsOrganizedByDomain();
-            
-            // Get all available tools across domains for context
-            List<McpToolInfo> allTools = new ArrayList<>();
-            toolsByDomain.values().forEach(allTools::addAll);
-            
-            // Get domain-specific tools if a domain was determined
-            List<McpToolInfo> domainTools = new ArrayList<>();
-            if (domain != null && !domain.isEmpty()) {
-                domainTools = toolsByDomain.getOrDefault(domain, new ArrayList<>());
-                log.debug("Found {} tools for domain: {}", domainTools.size(), domain);
+            if (speculated.get()) {
+                countSpeculation("cancelled");
             }
-            
-            // Create system prompt with all tools but highlighting domain-specific ones
-            String systemPrompt = createSystemPromptWithDomainFocus(allTools, domainTools, domain);
-            
-            // Convert conversation history to DeepSeek messages
-            List<DeepSeekMessage> messages = new ArrayList<>();
-            messages.add(DeepSeekMessage.systemMessage(systemPrompt));
-            
-            // Add conversation history as messages
-            for (ConversationMessage msg : history) {
-                if ("user".equals(msg.getRole())) {
-                    messages.add(DeepSeekMessage.userMessage(msg.getContent()));
-                } else if ("assistant".equals(msg.getRole())) {
-                    messages.add(DeepSeekMessage.assistantMessage(msg.getContent()));
-                }
+            return Mono.fromCallable(() -> answerWithCard(detected.get(), request, sessionId, timings));
+        });
+        
+        Mono<ChatResponse> llmAnswer = prepared.flatMap(turn -> {
+            if (turn.cachedResponse() != null) {
+                return noCard.map(none -> recordAnswer(turn, turn.cachedResponse(), sessionId, timings));
             }
-            
-            // Call DeepSeek API with the messages
-            String responseText = deepSeekClient.chatCompletion(messages)
-                    .map(response -> {
-                        if (response.getChoices() != null && !response.getChoices().isEmpty()) {
-                            return response.getChoices().get(0).getMessage().getContent();
+            Mono<?> start = speculationEnabled
+                    ? Mono.firstWithSignal(noCard, Mono.delay(Duration.ofMillis(speculationDelayMs))
+                            .doOnNext(tick -> speculated.set(true)))
+                    : noCard;
+            return start.then(callLlm(turn, timings))
+                    // A card found after the LLM answered still takes precedence
+                    .flatMap(responseText -> noCard.thenReturn(responseText))
+                    .map(responseText -> {
+                        if (speculated.get()) {
+                            countSpeculation("used");
                         }
-                        return "No response generated";
-                    })
-                    .block(); // Block to get the response synchronously
-            
-            // Add assistant response to conversation history
-            conversationService.addAssistantMessage(sessionId, responseText, domain);
-            
-            return new ChatResponse(responseText);
-        } catch (Exception e) {
-            log.error("Error processing chat request", e);
-            return new ChatResponse("An error occurred while processing your request: " + e.getMessage(), false);
+                        return recordAnswer(turn, responseText, sessionId, timings);
+                    });
+        }).onErrorResume(e -> noCard.then(Mono.error(e)));
+        
+        return Mono.firstWithSignal(cardAnswer, llmAnswer);
+    }
+    
+    private void countSpeculation(String outcome) {
+        meterRegistry.counter("chat.speculative.calls", "outcome", outcome).increment();
+    }
+    
+    /**
+     * Prepare everything needed for the LLM call, and look up the response cache.
+     */
+    private PreparedTurn prepareTurn(ChatRequest request, String sessionId, ChatTimings timings) throws JsonProcessingException {
+        long stageStart;
+        
+        // Get the conversation history that fits into the prompt's history budget
+        List<ConversationMessage> history = conversationService.getPromptHistory(sessionId);
+        
+        // If domain is specified in the request, use it; otherwise try to determine from the message
+        String domain = request.getDomain();
+        if (domain == null || domain.isEmpty()) {
+            stageStart = System.nanoTime();
+            domain = determineDomainFromMessage(request.getMessage());
+            recordStage(timings, STAGE_DOMAIN_DETECTION, stageStart);
+            log.debug("Determined domain from message: {}", domain);
+        }
+        
+        // Get tools organized by domain
+        stageStart = System.nanoTime();
+        Map<String, List<McpToolInfo>> toolsByDomain = getToolsOrganizedByDomain();
+        
+        // Get all available tools across domains for context
+        List<McpToolInfo> allTools = new ArrayList<>();
+        toolsByDomain.values().forEach(allTools::addAll);
+        
+        // Get domain-specific tools if a domain was determined
+        List<McpToolInfo> domainTools = new ArrayList<>();
+        if (domain != null && !domain.isEmpty()) {
+            domainTools = toolsByDomain.getOrDefault(domain, new ArrayList<>());
+            log.debug("Found {} tools for domain: {}", domainTools.size(), domain);
         }
+        
+        // Create system prompt with all tools but highlighting domain-specific ones, or only with the tools
+        // relevant to the message once the catalog outgrows the tool budget
+        String systemPrompt;
+        if (toolRetrievalIndex.catalogFitsBudget()) {
+            systemPrompt = createSystemPromptWithDomainFocus(allTools, domainTools, domain);
+        } else {
+            List<McpToolInfo> selectedTools = toolRetrievalIndex.search(request.getMessage());
+            if (selectedTools.isEmpty()) {
+                // Nothing in the message matches a tool, describe the tools of the domain or the catalog's first ones
+                selectedTools = toolRetrievalIndex.limitToBudget(domainTools.isEmpty() ? allTools : domainTools);
+            }
+            log.debug("Selected {} of {} tools for the prompt", selectedTools.size(), allTools.size());
+            systemPrompt = createSystemPromptWithSelectedTools(selectedTools, allTools.size(), domainTools, domain);
+        }
+        
+        // Convert conversation history to DeepSeek messages
+        List<DeepSeekMessage> messages = new ArrayList<>();
+        messages.add(DeepSeekMessage.systemMessage(systemPrompt));
+        
+        // Add conversation history as messages
+        for (ConversationMessage msg : history) {
+            if ("user".equals(msg.getRole())) {
+                messages.add(DeepSeekMessage.userMessage(msg.getContent()));
+            } else if ("assistant".equals(msg.getRole())) {
+                messages.add(DeepSeekMessage.assistantMessage(msg.getContent()));
+            } else if ("system".equals(msg.getRole())) {
+                // Kept out of the system prompt, so that the tools prefix stays cacheable across turns
+                messages.add(DeepSeekMessage.systemMessage("Summary of the earlier conversation:\n" + msg.getContent()));
+            }
+        }
+        recordStage(timings, STAGE_PROMPT_BUILD, stageStart);
+        
+        // Serve repeated questions from the response cache when the turn is not personalized
+        String cacheKey = null;
+        String cachedResponse = null;
+        if (llmResponseCache.isCacheable(request, history)) {
+            cacheKey = llmResponseCache.buildKey(systemPrompt, history, request.getMessage());
+            cachedResponse = llmResponseCache.get(cacheKey);
+            tagCurrentSpan("chat.cache", cachedResponse != null ? "hit" : "miss");
+            if (cachedResponse != null) {
+                log.debug("Serving response from LLM response cache for session {}", sessionId);
+            }
+        }
+        
+        return new PreparedTurn(messages, domain, cacheKey, cachedResponse);
+    }
+    
+    /**
+     * Call DeepSeek for a prepared turn
+     */
+    private Mono<String> callLlm(PreparedTurn turn, ChatTimings timings) {
+        return Mono.defer(() -> {
+                    long callStart = System.nanoTime();
+                    return deepSeekClient.chatCompletion(turn.messages())
+                            .doOnTerminate(() -> recordStage(timings, STAGE_DEEPSEEK_CALL, callStart));
+                })
+                .map(response -> {
+                    if (response.getChoices() != null && !response.getChoices().isEmpty()) {
+                        return response.getChoices().get(0).getMessage().getContent();
+                    }
+                    return NO_RESPONSE;
+                })
+                .defaultIfEmpty(NO_RESPONSE);
+    }
+    
+    /**
+     * Record the LLM or cached answer of a turn in the response cache and the conversation history
+     */
+    private ChatResponse recordAnswer(PreparedTurn turn, String responseText, String sessionId, ChatTimings timings) {
+        if (turn.cacheKey() != null && turn.cachedResponse() == null && !NO_RESPONSE.equals(responseText)) {
+            llmResponseCache.put(turn.cacheKey(), responseText);
+        }
+        
+        // Add assistant response to conversation history
+        long stageStart = System.nanoTime();
+        conversationService.addAssistantMessage(sessionId, responseText, turn.domain());
+        recordStage(timings, STAGE_HISTORY_UPDATE, stageStart);
+        
+        return new ChatResponse(responseText);
+    }
+    
+    /**
+     * Commit the JFR event of a finished chat turn
+     */
+    private static void commitTurnEvent(ChatTurnEvent event, ChatRequest request, String sessionId, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sessionHash = sessionHash(sessionId);
+            event.domain = request.getDomain();
+            event.messageLength = request.getMessage() != null ? request.getMessage().length() : 0;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+    
+    /**
+     * A stable, non-reversible identifier of the session for JFR events, which must not carry the session cookie
+     */
+    private static String sessionHash(String sessionId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Add an attribute to the span of the current request, if any
+     */
+    private void tagCurrentSpan(String key, String value) {
+        Observation observation = observationRegistry.getCurrentObservation();
+        if (observation != null) {
+            observation.highCardinalityKeyValue(key, value);
+        }
+    }
+    
+    /**
+     * Record the duration of one stage of a chat turn, both in the chat.stage timer and in the request's timings
+     */
+    private void recordStage(ChatTimings timings, String stage, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Timer.builder("chat.stage")
+                .description("Duration of chat processing stages")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        timings.record(stage, elapsedNanos);
+    }
+    
+    /**
+     * A chat turn ready for the LLM call, with the cached answer if the response cache has one
+     */
+    private record PreparedTurn(List<DeepSeekMessage> messages, String domain, String cacheKey, String cachedResponse) {
+    }
+    
+    /**
+     * Attach the serialized cards referenced by the response's card markup
+     */
+    private ChatResponse embedCards(ChatResponse response) {
+        if (response.getMessage() != null && response.getMessage().contains("@cards[")) {
+            response.setCards(messageCardService.getReferencedCards(response.getMessage()));
+        }
+        return response;
     }
     
     /**
@@ -152,7 +542,7 @@ public class LlmChatService {
     /**
      * Attempt to determine the most relevant domain based on the user's message
      */
-    private String determineDomainFromMessage(String message) {
+    String determineDomainFromMessage(String message) {
         // Get all domains and their tools
         Map<String, List<McpToolInfo>> toolsByDomain = getToolsOrganizedByDomain();
         
@@ -217,10 +607,18 @@ public class LlmChatService {
     }
     
     /**
-     * Get all tools organized by domain
+     * Get all tools organized by domain, regrouped only when the registry version changes.
+     * Domains and tools are sorted so that anything derived from them (such as the system prompt) is stable.
+     * The returned map and lists are shared and unmodifiable.
      */
-    private Map<String, List<McpToolInfo>> getToolsOrganizedByDomain() {
-        Map<String, List<McpToolInfo>> toolsByDomain = new HashMap<>();
+    Map<String, List<McpToolInfo>> getToolsOrganizedByDomain() {
+        GroupedTools current = groupedTools;
+        long version = mcpServiceDiscoveryService.getRegistryVersion();
+        if (current != null && current.registryVersion() == version) {
+            return current.toolsByDomain();
+        }
+        
+        Map<String, List<McpToolInfo>> toolsByDomain = new TreeMap<>();
         
         // Get all services
         List<McpServiceInfo> services = mcpServiceDiscoveryService.getAllServices();
@@ -234,55 +632,88 @@ public class LlmChatService {
             }
         }
         
-        return toolsByDomain;
+        toolsByDomain.replaceAll((domain, tools) -> {
+            tools.sort(TOOL_ORDER);
+            return Collections.unmodifiableList(tools);
+        });
+        Map<String, List<McpToolInfo>> result = Collections.unmodifiableMap(toolsByDomain);
+        groupedTools = new GroupedTools(version, result);
+        return result;
     }
     
     /**
      * Create a system prompt with information about available MCP tools, with focus on domain-specific tools.
+     * The static part (instructions, guidelines and the full tool list) comes first and is byte-identical
+     * across requests so DeepSeek can serve it from its context cache; the per-request domain focus is appended last.
      * 
      * @param allTools All available tools
      * @param domainTools Domain-specific tools
      * @param domain The current domain focus
      * @return A system prompt text
      */
-    private String createSystemPromptWithDomainFocus(List<McpToolInfo> allTools, List<McpToolInfo> domainTools, String domain) throws JsonProcessingException {
-        String allToolsJson = objectMapper.writeValueAsString(allTools);
-        String domainToolsJson = objectMapper.writeValueAsString(domainTools);
+    String createSystemPromptWithDomainFocus(List<McpToolInfo> allTools, List<McpToolInfo> domainTools, String domain) throws JsonProcessingException {
+        StringBuilder prompt = new StringBuilder(getStaticPromptPrefix(allTools));
         
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("""
-            You are an AI assistant with access to specialized MCP tools in various business domains.
-            Your task is to help the user by providing information or performing actions using these tools.
-            
-            """);
+        // If we have a specific domain focus, highlight it after the cacheable prefix
+        appendDomainFocus(prompt, domainTools, domain);
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Create a system prompt that describes only the tools selected for the message, out of a catalog
+     * too large to describe in full. Domain focus only names the selected tools of the domain.
+     * 
+     * @param selectedTools The tools relevant to the user's message
+     * @param catalogSize The number of tools available across domains
+     * @param domainTools Tools from the detected domain
+     * @param domain The detected domain (can be null)
+     * @return A system prompt text
+     */
+    String createSystemPromptWithSelectedTools(List<McpToolInfo> selectedTools, int catalogSize,
+                                               List<McpToolInfo> domainTools, String domain) throws JsonProcessingException {
+        String selectedToolsJson = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .writeValueAsString(selectedTools);
+        StringBuilder prompt = new StringBuilder(PROMPT_GUIDELINES)
+                .append("There are ").append(catalogSize).append(" tools across domains. ")
+                .append("The tools most relevant to the user's message are:\n")
+                .append(selectedToolsJson).append("\n\n");
         
-        // If we have a specific domain focus, highlight it
+        Set<McpToolInfo> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        selected.addAll(selectedTools);
+        appendDomainFocus(prompt, domainTools.stream().filter(selected::contains).toList(), domain);
+        
+        return prompt.toString();
+    }
+    
+    private static void appendDomainFocus(StringBuilder prompt, List<McpToolInfo> domainTools, String domain) {
         if (domain != null && !domain.isEmpty() && !domainTools.isEmpty()) {
-            prompt.append("Based on the user's message, I've determined that the ").append(domain).append(" domain is most relevant.\n\n");
-            prompt.append("Priority tools for the ").append(domain).append(" domain:\n");
-            prompt.append(domainToolsJson).append("\n\n");
+            prompt.append("Based on the user's message, I've determined that the ").append(domain).append(" domain is most relevant.\n");
+            prompt.append("Priority tools for the ").append(domain).append(" domain: ");
+            prompt.append(domainTools.stream().map(McpToolInfo::getName).collect(Collectors.joining(", "))).append("\n");
+        }
+    }
+    
+    /**
+     * Get the static prefix of the system prompt, rebuilding it only when the tool list changes.
+     * Unchanged services keep their tool instances across discovery refreshes, so the comparison
+     * is usually decided by reference equality of each element.
+     */
+    private String getStaticPromptPrefix(List<McpToolInfo> allTools) throws JsonProcessingException {
+        StaticPrompt current = staticPrompt;
+        if (current != null && current.tools().equals(allTools)) {
+            return current.text();
         }
         
-        prompt.append("All available tools across domains:\n");
-        prompt.append(allToolsJson).append("\n\n");
+        String allToolsJson = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .writeValueAsString(allTools);
         
-        prompt.append("""
-            Guidelines for tool selection and response:
-            1. First determine which domain is most relevant to the user's query.
-            2. Then select the most appropriate tool(s) based on their descriptions.
-            3. Explain how the selected tool(s) can address the user's query.
-            4. If the domain is unclear, analyze the content to determine the most appropriate domain.
-            5. For queries spanning multiple domains, explain which tools from each domain could be helpful.
-            6. Do not invent tool capabilities beyond what is described in the tool information.
-            7. If no suitable tools exist for a query, explain that you don't have access to tools for that specific request.
-            8. Keep your responses focused, clear, and helpful.
-            9. Maintain context of the conversation history and refer back to previous questions when relevant.
-            10. If the user's query relates to orders, logistics or package tracking, suggest using the special message card feature.
-            
-            Format your response as a helpful AI assistant integrating knowledge about the available tools.
-            """);
+        String text = PROMPT_GUIDELINES + "All available tools across domains:\n" + allToolsJson + "\n\n";
         
-        return prompt.toString();
+        staticPrompt = new StaticPrompt(List.copyOf(allTools), text);
+        return text;
     }
     
     /**
@@ -0,0 +1,162 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ChatRequest;
+import com.example.mcpclient.model.ConversationMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of LLM responses for repeated questions.
+ * Entries are keyed by a hash of the system prompt and the whole prompt history with the normalized user
+ * message, so FAQ-style turns can skip the DeepSeek round trip. A cached answer is only ever served for
+ * the very prompt it was generated for, whichever session sent it.
+ */
+@Service
+@Slf4j
+public class LlmResponseCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}？！。，、～…\\s]+$");
+
+    private final Cache<String, String> cache;
+    private final boolean enabled;
+    private final Pattern personalizedPattern;
+
+    public LlmResponseCache(
+            @Value("${llm.cache.enabled:true}") boolean enabled,
+            @Value("${llm.cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${llm.cache.max-entries:1000}") long maxEntries,
+            @Value("${llm.cache.personalized-pattern:}") String personalizedPattern,
+            MeterRegistry meterRegistry
+    ) {
+        this.enabled = enabled;
+        this.personalizedPattern = personalizedPattern == null || personalizedPattern.isEmpty()
+                ? null
+                : Pattern.compile(personalizedPattern);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "llmResponseCache");
+        Gauge.builder("llm.response.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Hit ratio of the LLM response cache")
+                .register(meterRegistry);
+
+        log.info("LLM response cache {} (ttl={}s, maxEntries={})",
+                enabled ? "enabled" : "disabled", ttlSeconds, maxEntries);
+    }
+
+    /**
+     * Whether the response to this request may be served from or stored in the cache.
+     * Requests that opt out, or whose message or earlier prompt history looks personalized (order numbers,
+     * user IDs...), always go to the model.
+     *
+     * @param request The chat request
+     * @param history The prompt history of the turn, including the current user message as its last entry
+     */
+    public boolean isCacheable(ChatRequest request, List<ConversationMessage> history) {
+        if (!enabled || request == null || request.getMessage() == null) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(request.getNoCache())) {
+            return false;
+        }
+        return !isPersonalized(request.getMessage())
+                && history.stream().noneMatch(message -> isPersonalized(message.getContent()));
+    }
+
+    /**
+     * Build the cache key for a turn.
+     *
+     * @param systemPrompt The system prompt sent with the turn
+     * @param history The prompt history, including the current user message as its last entry
+     * @param message The current user message
+     * @return A hex encoded SHA-256 key
+     */
+    public String buildKey(String systemPrompt, List<ConversationMessage> history, String message) {
+        MessageDigest digest = sha256();
+        digest.update(sha256().digest(systemPrompt.getBytes(StandardCharsets.UTF_8)));
+
+        // The current message is the last history entry, every turn before it is part of the prompt
+        for (ConversationMessage previous : history.subList(0, Math.max(0, history.size() - 1))) {
+            update(digest, previous.getRole());
+            update(digest, normalize(previous.getContent()));
+        }
+
+        update(digest, "user");
+        update(digest, normalize(message));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Look up a cached response
+     *
+     * @return The cached response, or null on a miss
+     */
+    public String get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Store a response for a key
+     */
+    public void put(String key, String response) {
+        if (response != null) {
+            cache.put(key, response);
+        }
+    }
+
+    /**
+     * Drop all cached responses
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Normalize a message so trivial variations (case, width, spacing, trailing punctuation) share a key.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private boolean isPersonalized(String text) {
+        return personalizedPattern != null && text != null && personalizedPattern.matcher(text).find();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
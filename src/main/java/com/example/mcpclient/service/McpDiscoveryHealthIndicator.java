@@ -0,0 +1,30 @@
+package com.example.mcpclient.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the MCP service registry as out of service until the initial discovery has completed
+ * or a discovery snapshot from a previous run has been loaded.
+ * Part of the readiness group, so that an instance only receives traffic once it knows its tools,
+ * while startup itself does not wait for Nacos.
+ */
+@Component
+public class McpDiscoveryHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private McpServiceDiscoveryService mcpServiceDiscoveryService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = mcpServiceDiscoveryService.isRegistryReady()
+                ? Health.up()
+                : Health.outOfService().withDetail("reason", "Initial MCP service discovery has not completed");
+        return builder
+                .withDetail("services", mcpServiceDiscoveryService.getAllServices().size())
+                .withDetail("tools", mcpServiceDiscoveryService.getAllTools().size())
+                .build();
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.mcpclient.service;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.example.mcpclient.model.McpInstanceState;
+import com.example.mcpclient.model.McpServiceInfo;
+import com.example.mcpclient.model.McpToolInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passive health checking of MCP service instances based on the outcome and latency of actual tool calls.
+ * Nacos only notices a dead instance once its heartbeats stop, and never notices one that is alive but
+ * failing or slow. Instances are ejected from selection when they fail repeatedly, when their error rate
+ * is too high, or when they are much slower than the other instances of the same service.
+ * An ejected instance is re-admitted after a delay that doubles with each consecutive ejection.
+ */
+@Service
+@Slf4j
+public class McpOutlierDetector {
+
+    // Weight of the latest call in the error rate and latency moving averages
+    private static final double EWMA_WEIGHT = 0.1;
+
+    private final McpServiceDiscoveryService mcpServiceDiscoveryService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int consecutiveFailures;
+    private final double errorRateThreshold;
+    private final double latencyFactor;
+    private final long minLatencyNanos;
+    private final int minRequests;
+    private final Duration baseEjection;
+    private final Duration maxEjection;
+    private final int maxEjectionPercent;
+
+    // Stats per service and instance address, see key()
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    // Registry version the stats were last pruned at
+    private final AtomicLong prunedVersion = new AtomicLong(-1);
+
+    private Clock clock = Clock.systemUTC();
+
+    public McpOutlierDetector(
+            McpServiceDiscoveryService mcpServiceDiscoveryService,
+            MeterRegistry meterRegistry,
+            @Value("${mcp.outlier.enabled:true}") boolean enabled,
+            @Value("${mcp.outlier.consecutive-failures:5}") int consecutiveFailures,
+            @Value("${mcp.outlier.error-rate-threshold:0.5}") double errorRateThreshold,
+            @Value("${mcp.outlier.latency-factor:3.0}") double latencyFactor,
+            @Value("${mcp.outlier.min-latency-ms:500}") long minLatencyMs,
+            @Value("${mcp.outlier.min-requests:10}") int minRequests,
+            @Value("${mcp.outlier.base-ejection-ms:30000}") long baseEjectionMs,
+            @Value("${mcp.outlier.max-ejection-ms:300000}") long maxEjectionMs,
+            @Value("${mcp.outlier.max-ejection-percent:50}") int maxEjectionPercent
+    ) {
+        this.mcpServiceDiscoveryService = mcpServiceDiscoveryService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.consecutiveFailures = Math.max(1, consecutiveFailures);
+        this.errorRateThreshold = errorRateThreshold;
+        this.latencyFactor = latencyFactor;
+        this.minLatencyNanos = Duration.ofMillis(minLatencyMs).toNanos();
+        this.minRequests = Math.max(1, minRequests);
+        this.baseEjection = Duration.ofMillis(baseEjectionMs);
+        this.maxEjection = Duration.ofMillis(Math.max(baseEjectionMs, maxEjectionMs));
+        this.maxEjectionPercent = Math.min(100, Math.max(0, maxEjectionPercent));
+
+        Gauge.builder("mcp.instances.ejected", this, McpOutlierDetector::getEjectedCount)
+                .description("MCP service instances currently ejected by outlier detection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Choose the instance to call for a tool, weighted by the Nacos instance weight.
+     * Instances that Nacos reports unhealthy or disabled, and instances ejected as outliers, are skipped
+     * unless no other instance is left, in which case all of them are candidates again.
+     *
+     * @return The instance address as {@code ip:port}
+     */
+    public String selectInstance(McpToolInfo tool) {
+        McpServiceInfo service = tool.getServiceName() == null
+                ? null : mcpServiceDiscoveryService.getServiceByName(tool.getServiceName());
+        if (service == null || service.getInstances().isEmpty()) {
+            Map<String, String> connectionDetails = tool.getConnectionDetails();
+            return connectionDetails.get("ip") + ":" + connectionDetails.get("port");
+        }
+
+        List<Instance> candidates = new ArrayList<>();
+        for (Instance instance : service.getInstances()) {
+            if (instance.isHealthy() && instance.isEnabled()) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(service.getInstances());
+        }
+
+        if (enabled) {
+            Instant now = clock.instant();
+            List<Instance> admitted = new ArrayList<>(candidates.size());
+            for (Instance instance : candidates) {
+                InstanceStats instanceStats = stats.get(key(service.getServiceName(), address(instance)));
+                if (instanceStats == null || !instanceStats.isEjected(now)) {
+                    admitted.add(instance);
+                }
+            }
+            if (!admitted.isEmpty()) {
+                candidates = admitted;
+            }
+        }
+        return address(pickWeighted(candidates));
+    }
+
+    /**
+     * Record the outcome of a tool call to an instance returned by {@link #selectInstance(McpToolInfo)}
+     *
+     * @param failed Whether the instance failed to answer (connection error, timeout, 5xx); a 4xx response
+     *               or a missing record still counts as a working instance
+     * @param latencyNanos Duration of the call
+     */
+    public void recordCall(String serviceName, String address, boolean failed, long latencyNanos) {
+        if (!enabled || serviceName == null) {
+            return;
+        }
+        pruneRemovedInstances();
+        InstanceStats instanceStats = stats.computeIfAbsent(key(serviceName, address),
+                key -> new InstanceStats(serviceName, address));
+        Instant now = clock.instant();
+        Outlier outlier = instanceStats.record(failed, latencyNanos, now);
+        if (outlier == null) {
+            outlier = latencyOutlier(instanceStats, now);
+        }
+        if (outlier == null || !canEject(serviceName, now)) {
+            return;
+        }
+        Duration ejection = instanceStats.eject(now);
+        if (ejection != null) {
+            Counter.builder("mcp.instance.ejections")
+                    .description("MCP service instances ejected by outlier detection")
+                    .tag("service", serviceName)
+                    .tag("reason", outlier.reason())
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Ejected MCP instance {} of {} for {}s: {}",
+                    address, serviceName, ejection.toSeconds(), outlier.detail());
+        }
+    }
+
+    /**
+     * Copy of the service info with the observed state of each of its instances, for the services API.
+     * The service info itself is shared with the registry and left unchanged.
+     */
+    public McpServiceInfo withInstanceStates(McpServiceInfo service) {
+        McpServiceInfo copy = new McpServiceInfo();
+        copy.setServiceName(service.getServiceName());
+        copy.setDomain(service.getDomain());
+        copy.setProtocol(service.getProtocol());
+        copy.setMcpVersion(service.getMcpVersion());
+        copy.setInstances(service.getInstances());
+        copy.setTools(service.getTools());
+
+        Instant now = clock.instant();
+        List<McpInstanceState> states = new ArrayList<>();
+        for (Instance instance : service.getInstances()) {
+            String address = address(instance);
+            McpInstanceState state = new McpInstanceState();
+            state.setAddress(address);
+            state.setHealthy(instance.isHealthy() && instance.isEnabled());
+            InstanceStats instanceStats = stats.get(key(service.getServiceName(), address));
+            if (instanceStats != null) {
+                instanceStats.describe(state, now);
+            }
+            states.add(state);
+        }
+        copy.setInstanceStates(states);
+        return copy;
+    }
+
+    /**
+     * A successful call is a latency outlier when its moving average is a multiple of the median of the
+     * other instances of the service, and above an absolute floor so that fast services are left alone
+     */
+    private Outlier latencyOutlier(InstanceStats instanceStats, Instant now) {
+        double latency = instanceStats.latencyIfSampled(minRequests);
+        if (latency < minLatencyNanos) {
+            return null;
+        }
+        List<Double> peers = new ArrayList<>();
+        for (InstanceStats other : stats.values()) {
+            if (other != instanceStats && other.serviceName.equals(instanceStats.serviceName) && !other.isEjected(now)) {
+                double otherLatency = other.latencyIfSampled(minRequests);
+                if (otherLatency >= 0) {
+                    peers.add(otherLatency);
+                }
+            }
+        }
+        if (peers.isEmpty()) {
+            return null;
+        }
+        peers.sort(null);
+        double median = peers.get(peers.size() / 2);
+        if (latency < median * latencyFactor) {
+            return null;
+        }
+        return new Outlier("latency",
+                String.format("latency %.0fms, peers %.0fms", latency / 1_000_000, median / 1_000_000));
+    }
+
+    /**
+     * Forget instances that are no longer registered, once per registry version
+     */
+    private void pruneRemovedInstances() {
+        long version = mcpServiceDiscoveryService.getRegistryVersion();
+        long previous = prunedVersion.get();
+        if (previous == version || !prunedVersion.compareAndSet(previous, version)) {
+            return;
+        }
+        stats.values().removeIf(instanceStats -> {
+            McpServiceInfo service = mcpServiceDiscoveryService.getServiceByName(instanceStats.serviceName);
+            return service == null || service.getInstances().stream()
+                    .noneMatch(instance -> address(instance).equals(instanceStats.address));
+        });
+    }
+
+    /**
+     * Keep at least the configured share of a service's instances in rotation
+     */
+    private boolean canEject(String serviceName, Instant now) {
+        McpServiceInfo service = mcpServiceDiscoveryService.getServiceByName(serviceName);
+        int instances = service == null ? 0 : service.getInstances().size();
+        int ejected = 0;
+        for (InstanceStats instanceStats : stats.values()) {
+            if (instanceStats.serviceName.equals(serviceName) && instanceStats.isEjected(now)) {
+                ejected++;
+            }
+        }
+        return ejected + 1 <= instances * maxEjectionPercent / 100;
+    }
+
+    private int getEjectedCount() {
+        Instant now = clock.instant();
+        return (int) stats.values().stream().filter(instanceStats -> instanceStats.isEjected(now)).count();
+    }
+
+    private static Instance pickWeighted(List<Instance> instances) {
+        if (instances.size() == 1) {
+            return instances.get(0);
+        }
+        double total = 0;
+        for (Instance instance : instances) {
+            total += Math.max(0, instance.getWeight());
+        }
+        if (total <= 0) {
+            return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (Instance instance : instances) {
+            point -= Math.max(0, instance.getWeight());
+            if (point < 0) {
+                return instance;
+            }
+        }
+        return instances.get(instances.size() - 1);
+    }
+
+    private static String address(Instance instance) {
+        return instance.getIp() + ":" + instance.getPort();
+    }
+
+    private static String key(String serviceName, String address) {
+        return serviceName + "/" + address;
+    }
+
+    /**
+     * Why an instance is ejected: the reason is a metric tag, the detail is logged
+     */
+    private record Outlier(String reason, String detail) {
+    }
+
+    /**
+     * Call statistics of one instance of a service, reset when the instance is re-admitted
+     */
+    private final class InstanceStats {
+
+        private final String serviceName;
+        private final String address;
+
+        // Guarded by this
+        private long requests;
+        private int failuresInARow;
+        private double errorRate;
+        private double latencyNanos;
+        private Instant ejectedUntil;
+        private int ejectionCount;
+        private long requestsSinceReadmission;
+
+        InstanceStats(String serviceName, String address) {
+            this.serviceName = serviceName;
+            this.address = address;
+        }
+
+        /**
+         * Add a call to the statistics
+         *
+         * @return Why the instance should be ejected for its errors, or null
+         */
+        synchronized Outlier record(boolean failed, long latency, Instant now) {
+            readmitIfDue(now);
+            requests++;
+            requestsSinceReadmission++;
+            failuresInARow = failed ? failuresInARow + 1 : 0;
+            errorRate = requests == 1 ? (failed ? 1 : 0) : errorRate + EWMA_WEIGHT * ((failed ? 1 : 0) - errorRate);
+            latencyNanos = requests == 1 ? latency : latencyNanos + EWMA_WEIGHT * (latency - latencyNanos);
+
+            // A re-admitted instance that has served enough calls works again, so the next ejection is shorter
+            if (ejectedUntil == null && ejectionCount > 0 && requestsSinceReadmission >= minRequests) {
+                ejectionCount--;
+                requestsSinceReadmission = 0;
+            }
+
+            if (ejectedUntil != null) {
+                return null;
+            }
+            if (failuresInARow >= consecutiveFailures) {
+                return new Outlier("consecutive_failures", failuresInARow + " consecutive failures");
+            }
+            if (requests >= minRequests && errorRate >= errorRateThreshold) {
+                return new Outlier("error_rate", String.format("error rate %.0f%%", errorRate * 100));
+            }
+            return null;
+        }
+
+        synchronized double latencyIfSampled(int minSamples) {
+            return requests >= minSamples && ejectedUntil == null ? latencyNanos : -1;
+        }
+
+        synchronized boolean isEjected(Instant now) {
+            readmitIfDue(now);
+            return ejectedUntil != null;
+        }
+
+        /**
+         * @return The ejection duration, or null if another call ejected the instance already
+         */
+        synchronized Duration eject(Instant now) {
+            if (ejectedUntil != null) {
+                return null;
+            }
+            ejectionCount++;
+            long multiplier = 1L << Math.min(ejectionCount - 1, 20);
+            Duration ejection = baseEjection.multipliedBy(multiplier);
+            if (ejection.compareTo(maxEjection) > 0) {
+                ejection = maxEjection;
+            }
+            ejectedUntil = now.plus(ejection);
+            return ejection;
+        }
+
+        synchronized void describe(McpInstanceState state, Instant now) {
+            readmitIfDue(now);
+            state.setEjected(ejectedUntil != null);
+            state.setEjectedUntil(ejectedUntil);
+            state.setEjectionCount(ejectionCount);
+            state.setRequests(requests);
+            state.setErrorRate(errorRate);
+            state.setLatencyMs(latencyNanos / 1_000_000);
+        }
+
+        private void readmitIfDue(Instant now) {
+            if (ejectedUntil != null && !now.isBefore(ejectedUntil)) {
+                ejectedUntil = null;
+                requests = 0;
+                failuresInARow = 0;
+                errorRate = 0;
+                latencyNanos = 0;
+                requestsSinceReadmission = 0;
+                log.info("Re-admitted MCP instance {} of {}", address, serviceName);
+            }
+        }
+    }
+}
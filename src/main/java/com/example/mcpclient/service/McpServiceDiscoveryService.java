@@ -7,17 +7,45 @@ import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.alibaba.nacos.api.naming.pojo.ListView;
 import com.example.mcpclient.model.McpServiceInfo;
 import com.example.mcpclient.model.McpToolInfo;
+import com.example.mcpclient.service.jfr.DiscoveryRefreshEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service responsible for discovering MCP services and tools from Nacos.
+ * When {@code mcp.discovery.static-file} is set, services are read from that JSON file instead,
+ * which maps service names to their instances in the Nacos {@link Instance} format.
+ * The last good registry is persisted in the same format to {@code mcp.discovery.snapshot-file} and loaded at
+ * startup, so that the application can serve lookups before the first Nacos discovery and while Nacos is down.
+ * <p>
+ * A service is only rebuilt when the fingerprint of its instances and metadata changes, and every change to the
+ * registry increments {@link #getRegistryVersion()}, so that derived data (tool index, prompts) can be cached
+ * until the version moves.
  */
 @Service
 @Slf4j
@@ -35,13 +63,111 @@ public class McpServiceDiscoveryService {
     @Value("${mcp.client.domains}")
     private List<String> targetDomains;
 
+    @Value("${mcp.discovery.static-file:}")
+    private String staticFile;
+
+    @Value("${mcp.discovery.snapshot-file:}")
+    private String snapshotFile;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    private static final TypeReference<Map<String, List<Instance>>> INSTANCES_TYPE = new TypeReference<>() {};
+
+    // Instances sorted by address so that the snapshot only changes when the instances do
+    private static final Comparator<Instance> INSTANCE_ORDER = Comparator
+            .comparing(Instance::getIp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Instance::getPort);
+
     private NamingService namingService;
 
+    // Instances per service read from the static discovery file, null when discovering from Nacos
+    private Map<String, List<Instance>> staticInstances;
+
     // Map of service name to service info
     private final Map<String, McpServiceInfo> mcpServices = new ConcurrentHashMap<>();
 
+    // Fingerprint of the instances and metadata each service in mcpServices was built from
+    private final Map<String, String> serviceFingerprints = new ConcurrentHashMap<>();
+
+    // Incremented whenever a service is added, rebuilt or removed
+    private final AtomicLong registryVersion = new AtomicLong();
+
+    // Tools of the registry at a version, rebuilt on the first lookup after the version changes
+    private volatile ToolIndex toolIndex;
+
+    private record ToolIndex(long registryVersion, List<McpToolInfo> tools, Map<String, McpToolInfo> toolsByName) {
+    }
+
+    // Set once the first discovery succeeds or a snapshot is loaded, see McpDiscoveryHealthIndicator
+    private volatile boolean registryReady;
+
+    // Content of the snapshot file as last written or loaded, to skip writing it when nothing changed
+    private byte[] lastSnapshot;
+
     @PostConstruct
     public void init() {
+        Gauge.builder("mcp.registry.services", mcpServices, Map::size)
+                .description("Number of discovered MCP services")
+                .register(meterRegistry);
+        Gauge.builder("mcp.registry.tools", this, service -> service.getAllTools().size())
+                .description("Number of discovered MCP tools")
+                .register(meterRegistry);
+
+        if (staticFile != null && !staticFile.isEmpty()) {
+            try {
+                log.info("Initializing MCP Service Discovery from static file: {}", staticFile);
+                staticInstances = objectMapper.readValue(Path.of(staticFile).toFile(), INSTANCES_TYPE);
+                discoverMcpServices();
+            } catch (IOException e) {
+                log.error("Failed to read static MCP service file {}", staticFile, e);
+            }
+            return;
+        }
+
+        // Nacos is connected to and queried by the first scheduled refresh, off the startup path,
+        // so that a slow or unreachable Nacos server does not delay startup; until then the snapshot serves lookups
+        loadSnapshot();
+    }
+
+    /**
+     * Periodically discover MCP services from Nacos.
+     * The first run starts as soon as the application context is up and performs the initial discovery.
+     */
+    @Scheduled(fixedDelayString = "${mcp.client.refresh-interval-ms}")
+    public synchronized void refreshServices() {
+        if (staticInstances == null && namingService == null && !connectToNacos()) {
+            return;
+        }
+        log.debug("Refreshing MCP services from Nacos");
+        discoverMcpServices();
+    }
+
+    /**
+     * Whether the registry is populated: a discovery has completed since startup or a snapshot was loaded
+     */
+    public boolean isRegistryReady() {
+        return registryReady;
+    }
+
+    /**
+     * Version of the registry, incremented whenever a service is added, changed or removed.
+     * Anything derived from the discovered services can be cached until it changes.
+     */
+    public long getRegistryVersion() {
+        return registryVersion.get();
+    }
+
+    /**
+     * Create the Nacos naming service, retried on the next refresh if it fails
+     */
+    private boolean connectToNacos() {
         try {
             log.info("Initializing MCP Service Discovery with Nacos server: {}", nacosAddress);
             
@@ -51,34 +177,30 @@ public class McpServiceDiscoveryService {
             properties.put("namespace", nacosNamespace);
             namingService = NacosFactory.createNamingService(properties);
             
-            // Discover services immediately on startup
-            discoverMcpServices();
-            
             log.info("MCP Service Discovery initialized successfully");
+            return true;
         } catch (NacosException e) {
             log.error("Failed to initialize MCP Service Discovery", e);
+            return false;
         }
     }
 
-    /**
-     * Periodically discover MCP services from Nacos
-     */
-    @Scheduled(fixedDelayString = "${mcp.client.refresh-interval-ms}")
-    public void refreshServices() {
-        log.debug("Refreshing MCP services from Nacos");
-        discoverMcpServices();
-    }
-
     /**
      * Discover all MCP services from Nacos
      */
     private void discoverMcpServices() {
-        try {
+        // Recorded as the mcp.discovery.refresh timer and as a span covering the Nacos lookups
+        Observation observation = Observation.createNotStarted("mcp.discovery.refresh", observationRegistry)
+                .contextualName("mcp discovery refresh")
+                .start();
+        DiscoveryRefreshEvent event = new DiscoveryRefreshEvent();
+        event.begin();
+        String outcome = "error";
+        try (Observation.Scope scope = observation.openScope()) {
             log.debug("Discovering MCP services from Nacos");
             
             // Get all services in the MCP group
-            ListView<String> serviceListView = namingService.getServicesOfServer(1, Integer.MAX_VALUE, mcpGroup);
-            List<String> serviceNames = serviceListView.getData();
+            List<String> serviceNames = listServiceNames();
             log.debug("Found {} services in MCP group", serviceNames.size());
             
             // Filter services based on target domains
@@ -86,26 +208,235 @@ public class McpServiceDiscoveryService {
             log.debug("Filtered to {} services based on target domains", filteredServices.size());
             
             // Process each service to extract MCP information
+            int changed = 0;
             for (String serviceName : filteredServices) {
                 try {
-                    List<Instance> instances = namingService.getAllInstances(serviceName, mcpGroup);
-                    if (!instances.isEmpty()) {
-                        McpServiceInfo serviceInfo = createServiceInfo(serviceName, instances);
-                        mcpServices.put(serviceName, serviceInfo);
-                        log.debug("Processed MCP service: {} with {} tools", serviceName, serviceInfo.getTools().size());
+                    List<Instance> instances = Observation.createNotStarted("mcp.discovery.lookup", observationRegistry)
+                            .contextualName("nacos getAllInstances")
+                            .highCardinalityKeyValue("service", serviceName)
+                            .observeChecked(() -> getInstances(serviceName));
+                    if (instances.isEmpty()) {
+                        changed += removeService(serviceName) ? 1 : 0;
+                    } else if (updateService(serviceName, instances)) {
+                        changed++;
                     }
                 } catch (Exception e) {
+                    // Keep the last known state of the service until its lookup succeeds again
                     log.error("Error processing service {}: {}", serviceName, e.getMessage());
                 }
             }
-            
-            log.info("Discovered {} MCP services with a total of {} tools", 
-                     mcpServices.size(), getAllTools().size());
+
+            // Drop services that are no longer registered
+            for (String serviceName : new ArrayList<>(mcpServices.keySet())) {
+                if (!filteredServices.contains(serviceName) && removeService(serviceName)) {
+                    changed++;
+                }
+            }
+
+            if (changed > 0) {
+                long version = registryVersion.incrementAndGet();
+                log.info("Discovered {} MCP services with a total of {} tools, {} changed, registry version {}",
+                         mcpServices.size(), getAllTools().size(), changed, version);
+            } else {
+                log.debug("Discovered {} MCP services, none changed", mcpServices.size());
+            }
+            observation.highCardinalityKeyValue("services", String.valueOf(mcpServices.size()));
+            observation.highCardinalityKeyValue("changed", String.valueOf(changed));
+            outcome = "success";
+            markRegistryReady("discovery");
+            if (staticInstances == null && changed > 0) {
+                saveSnapshot();
+            }
         } catch (NacosException e) {
             log.error("Failed to discover MCP services from Nacos", e);
+            observation.error(e);
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", outcome).stop();
+            event.end();
+            if (event.shouldCommit()) {
+                event.services = mcpServices.size();
+                event.tools = getAllTools().size();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Rebuild the service info if its instances or metadata changed since the last discovery
+     *
+     * @return whether the service was added or rebuilt
+     */
+    private boolean updateService(String serviceName, List<Instance> instances) {
+        String fingerprint = fingerprint(instances);
+        if (fingerprint.equals(serviceFingerprints.get(serviceName)) && mcpServices.containsKey(serviceName)) {
+            return false;
+        }
+        McpServiceInfo serviceInfo = createServiceInfo(serviceName, instances);
+        mcpServices.put(serviceName, serviceInfo);
+        serviceFingerprints.put(serviceName, fingerprint);
+        log.debug("Processed MCP service: {} with {} tools", serviceName, serviceInfo.getTools().size());
+        return true;
+    }
+
+    private boolean removeService(String serviceName) {
+        serviceFingerprints.remove(serviceName);
+        if (mcpServices.remove(serviceName) == null) {
+            return false;
+        }
+        log.info("MCP service {} is no longer available", serviceName);
+        return true;
+    }
+
+    /**
+     * Hash of everything a service info is built from: the address, weight and state of each instance
+     * and its metadata, independent of the order Nacos returns instances and metadata in
+     */
+    private static String fingerprint(List<Instance> instances) {
+        List<Instance> sorted = new ArrayList<>(instances);
+        sorted.sort(INSTANCE_ORDER);
+        MessageDigest digest = sha256();
+        for (Instance instance : sorted) {
+            update(digest, instance.getIp());
+            update(digest, String.valueOf(instance.getPort()));
+            update(digest, String.valueOf(instance.getWeight()));
+            update(digest, String.valueOf(instance.isHealthy()));
+            update(digest, String.valueOf(instance.isEnabled()));
+            Map<String, String> metadata = instance.getMetadata() == null
+                    ? Collections.emptyMap() : new TreeMap<>(instance.getMetadata());
+            update(digest, String.valueOf(metadata.size()));
+            metadata.forEach((key, value) -> {
+                update(digest, key);
+                update(digest, value);
+            });
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        // Length-prefixed so that adjacent values cannot run into each other
+        byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        digest.update(String.valueOf(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void markRegistryReady(String source) {
+        if (!registryReady) {
+            registryReady = true;
+            log.info("MCP service registry is ready from {}, {}ms after JVM start",
+                    source, ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    /**
+     * Load the registry persisted by a previous run, if any
+     */
+    private void loadSnapshot() {
+        if (snapshotFile == null || snapshotFile.isEmpty()) {
+            return;
+        }
+        Path path = Path.of(snapshotFile);
+        if (!Files.exists(path)) {
+            log.info("No MCP discovery snapshot at {}, waiting for Nacos", path.toAbsolutePath());
+            return;
+        }
+
+        try {
+            byte[] json = Files.readAllBytes(path);
+            Map<String, List<Instance>> instancesByService = objectMapper.readValue(json, INSTANCES_TYPE);
+            for (String serviceName : filterServicesByDomains(new ArrayList<>(instancesByService.keySet()))) {
+                List<Instance> instances = instancesByService.get(serviceName);
+                if (instances != null && !instances.isEmpty()) {
+                    updateService(serviceName, instances);
+                }
+            }
+            lastSnapshot = json;
+            registryVersion.incrementAndGet();
+
+            Duration age = Duration.between(Files.getLastModifiedTime(path).toInstant(), Instant.now());
+            log.info("Loaded {} MCP services with {} tools from discovery snapshot {} ({}s old)",
+                    mcpServices.size(), getAllTools().size(), path.toAbsolutePath(), age.toSeconds());
+            markRegistryReady("snapshot");
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load MCP discovery snapshot {}, waiting for Nacos", path.toAbsolutePath(), e);
         }
     }
 
+    /**
+     * Persist the current registry when it has changed. The file is replaced atomically,
+     * so a crash while writing never leaves a truncated snapshot behind.
+     */
+    void saveSnapshot() {
+        if (snapshotFile == null || snapshotFile.isEmpty()) {
+            return;
+        }
+
+        Path target = Path.of(snapshotFile).toAbsolutePath();
+        Path temp = null;
+        try {
+            Map<String, List<Instance>> instancesByService = new TreeMap<>();
+            mcpServices.forEach((serviceName, serviceInfo) -> {
+                List<Instance> instances = new ArrayList<>(serviceInfo.getInstances());
+                instances.sort(INSTANCE_ORDER);
+                instancesByService.put(serviceName, instances);
+            });
+            byte[] json = objectMapper.writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .withDefaultPrettyPrinter()
+                    .writeValueAsBytes(instancesByService);
+            if (Arrays.equals(json, lastSnapshot)) {
+                return;
+            }
+
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            Files.write(temp, json);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshot = json;
+            log.debug("Saved MCP discovery snapshot with {} services to {}", instancesByService.size(), target);
+        } catch (IOException e) {
+            log.warn("Failed to save MCP discovery snapshot {}", target, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.debug("Failed to delete temporary snapshot file {}", temp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * List the names of all services in the MCP group
+     */
+    private List<String> listServiceNames() throws NacosException {
+        if (staticInstances != null) {
+            return new ArrayList<>(staticInstances.keySet());
+        }
+        ListView<String> serviceListView = namingService.getServicesOfServer(1, Integer.MAX_VALUE, mcpGroup);
+        return serviceListView.getData();
+    }
+
+    /**
+     * Get all instances of a service in the MCP group
+     */
+    private List<Instance> getInstances(String serviceName) throws NacosException {
+        if (staticInstances != null) {
+            return staticInstances.getOrDefault(serviceName, Collections.emptyList());
+        }
+        return namingService.getAllInstances(serviceName, mcpGroup);
+    }
+
     /**
      * Filter services based on target domains
      */
@@ -192,9 +523,7 @@ public class McpServiceDiscoveryService {
      * Get all discovered MCP tools
      */
     public List<McpToolInfo> getAllTools() {
-        List<McpToolInfo> allTools = new ArrayList<>();
-        mcpServices.values().forEach(service -> allTools.addAll(service.getTools()));
-        return allTools;
+        return new ArrayList<>(getToolIndex().tools());
     }
 
     /**
@@ -219,17 +548,35 @@ public class McpServiceDiscoveryService {
      * Get tool by name
      */
     public McpToolInfo getToolByName(String toolName) {
-        return getAllTools().stream()
-                .filter(tool -> tool.getName().equals(toolName))
-                .findFirst()
-                .orElse(null);
+        return getToolIndex().toolsByName().get(toolName);
+    }
+
+    private ToolIndex getToolIndex() {
+        ToolIndex current = toolIndex;
+        long version = registryVersion.get();
+        if (current != null && current.registryVersion() == version) {
+            return current;
+        }
+
+        // Read after the version, so an index built during a refresh is rebuilt once the version moves
+        List<McpToolInfo> tools = new ArrayList<>();
+        Map<String, McpToolInfo> toolsByName = new HashMap<>();
+        for (McpServiceInfo service : mcpServices.values()) {
+            for (McpToolInfo tool : service.getTools()) {
+                tools.add(tool);
+                toolsByName.putIfAbsent(tool.getName(), tool);
+            }
+        }
+        current = new ToolIndex(version, List.copyOf(tools), Map.copyOf(toolsByName));
+        toolIndex = current;
+        return current;
     }
 
     /**
      * Force refresh of services
      */
     public int forceRefresh() {
-        discoverMcpServices();
+        refreshServices();
         return mcpServices.size();
     }
 } 
\ No newline at end of file
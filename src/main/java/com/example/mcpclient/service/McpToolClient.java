@@ -0,0 +1,226 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import com.example.mcpclient.service.jfr.McpToolCallEvent;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+/**
+ * MCP工具调用客户端，负责通过HTTP调用MCP服务暴露的工具
+ */
+@Service
+@Slf4j
+public class McpToolClient {
+
+    private static final String DATA_FIELD = "data";
+
+    private final ObjectMapper objectMapper;
+
+    private final RestTemplate restTemplate;
+
+    private final ObservationRegistry observationRegistry;
+
+    private final McpOutlierDetector outlierDetector;
+
+    public McpToolClient(
+            ObjectMapper objectMapper,
+            RestTemplateBuilder restTemplateBuilder,
+            ObservationRegistry observationRegistry,
+            McpOutlierDetector outlierDetector,
+            @Value("${mcp.client.connection-timeout:3000}") int connectionTimeout,
+            @Value("${mcp.client.read-timeout:5000}") int readTimeout
+    ) {
+        this.objectMapper = objectMapper;
+        this.observationRegistry = observationRegistry;
+        this.outlierDetector = outlierDetector;
+
+        // 在聊天请求中调用时，连接和读取超时不超过该请求剩余的时间预算
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                ChatDeadline deadline = ChatDeadline.current();
+                if (deadline != null) {
+                    // 超时为0表示不限时，因此至少为1毫秒
+                    connection.setConnectTimeout((int) Math.max(1, deadline.boundMillis(connectionTimeout)));
+                    connection.setReadTimeout((int) Math.max(1, deadline.boundMillis(readTimeout)));
+                }
+            }
+        };
+        requestFactory.setConnectTimeout(connectionTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        // 使用Spring Boot的RestTemplateBuilder构建，HTTP调用会生成span并通过traceparent头传播到MCP服务
+        this.restTemplate = restTemplateBuilder
+                .requestFactory(() -> requestFactory)
+                .build();
+    }
+
+    /**
+     * 调用MCP工具，并只读取响应中的data字段
+     * 响应体以流的方式解析，跳过data之外的字段，直接绑定到目标类型，不会构造完整的字符串和JSON树
+     *
+     * @param tool MCP工具信息
+     * @param params 请求参数
+     * @param dataType data字段的目标类型，可以是POJO或JsonNode
+     * @return data字段的内容，如果不存在或为null则返回null
+     */
+    public <T> T callToolForData(McpToolInfo tool, Map<String, Object> params, Class<T> dataType) throws IOException {
+        // 聊天请求的时间预算已用完时不再调用，调用方按调用失败降级处理
+        ChatDeadline deadline = ChatDeadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new SocketTimeoutException("Chat deadline exceeded before calling MCP tool " + tool.getName());
+        }
+
+        // 选择实例（跳过被离群检测摘除的实例）并构建请求URL
+        String instance = outlierDetector.selectInstance(tool);
+        String url = buildToolUrl(instance, tool);
+
+        // 构建请求体
+        byte[] requestBody = objectMapper.writeValueAsBytes(params);
+
+        // 发送请求并以流的方式解析响应，按工具和结果记录调用耗时，同时作为HTTP调用span的父span
+        Observation observation = Observation.createNotStarted("mcp.tool.calls", observationRegistry)
+                .contextualName("mcp " + tool.getName())
+                .lowCardinalityKeyValue("tool", tool.getName())
+                .lowCardinalityKeyValue("service", String.valueOf(tool.getServiceName()))
+                .highCardinalityKeyValue("instance", instance)
+                .start();
+        McpToolCallEvent event = new McpToolCallEvent();
+        event.begin();
+        CountingInputStream[] responseBody = new CountingInputStream[1];
+        long startNanos = System.nanoTime();
+        String outcome = "error";
+        boolean instanceFailed = true;
+        try (Observation.Scope scope = observation.openScope()) {
+            T data = restTemplate.execute(url, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        // 将剩余时间预算传给MCP服务，超时后的结果不会再被使用
+                        if (deadline != null) {
+                            request.getHeaders().set(ChatDeadline.HEADER, String.valueOf(deadline.remaining().toMillis()));
+                        }
+                        request.getBody().write(requestBody);
+                    },
+                    response -> {
+                        responseBody[0] = new CountingInputStream(response.getBody());
+                        return readDataField(responseBody[0], dataType);
+                    });
+            outcome = data != null ? "success" : "not_found";
+            instanceFailed = false;
+            return data;
+        } catch (HttpClientErrorException e) {
+            // 4xx说明实例本身可用，不计入实例的错误率
+            instanceFailed = false;
+            observation.error(e);
+            throw e;
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            // 因时间预算用完而超时不代表实例异常，不计入实例的统计
+            if (!instanceFailed || deadline == null || !deadline.isExpired()) {
+                outlierDetector.recordCall(tool.getServiceName(), instance, instanceFailed, System.nanoTime() - startNanos);
+            }
+            observation.lowCardinalityKeyValue("outcome", outcome).stop();
+            event.end();
+            if (event.shouldCommit()) {
+                event.tool = tool.getName();
+                event.service = tool.getServiceName();
+                event.instance = instance;
+                event.requestBytes = requestBody.length;
+                event.responseBytes = responseBody[0] != null ? responseBody[0].count : 0;
+                event.outcome = outcome;
+                event.commit();
+            }
+            // 在聊天请求中调用时，计入该请求的Server-Timing
+            ChatTimings timings = ChatTimings.current();
+            if (timings != null) {
+                timings.record("mcp_tool", System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /**
+     * 从响应流中定位顶层data字段并绑定为目标类型
+     */
+    <T> T readDataField(InputStream body, Class<T> dataType) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if (DATA_FIELD.equals(fieldName)) {
+                    return valueToken == JsonToken.VALUE_NULL ? null : objectMapper.readValue(parser, dataType);
+                }
+                // 跳过data之外的字段
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 统计从响应流中读取的字节数
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * 构建MCP工具在指定实例（ip:port）上的调用地址
+     */
+    private String buildToolUrl(String instance, McpToolInfo tool) {
+        return String.format("http://%s/api/mcp/tools/%s", instance, tool.getName());
+    }
+}
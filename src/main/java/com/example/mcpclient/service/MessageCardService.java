@@ -3,20 +3,49 @@ package com.example.mcpclient.service;
 import com.example.mcpclient.model.LogisticsMessageCard;
 import com.example.mcpclient.model.LogisticsTrackingCard;
 import com.example.mcpclient.model.MessageCard;
+import com.example.mcpclient.model.OrderData;
 import com.example.mcpclient.model.OrderMessageCard;
 import com.example.mcpclient.model.LogisticsTrackingCard.TrackingDetail;
 import com.example.mcpclient.model.OrderMessageCard.OrderItem;
+import com.example.mcpclient.service.jfr.CardStoreEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -26,8 +55,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MessageCardService {
     
-    // 存储所有消息卡片的内存数据库
-    private final Map<String, MessageCard> cardDatabase = new ConcurrentHashMap<>();
+    // 消息中的卡片标记格式：@cards[卡片ID,卡片类型]
+    private static final Pattern CARD_MARKUP_PATTERN = Pattern.compile("@cards\\[([\\w-]+),([\\w-]+)\\]");
+    
+    // 存储所有消息卡片的内存数据库，同时保存卡片序列化后的JSON字节
+    private final Map<String, StoredCard> cardDatabase = new ConcurrentHashMap<>();
     
     @Autowired
     private OrderDataService orderDataService;
@@ -35,6 +67,47 @@ public class MessageCardService {
     @Autowired
     private UserDataService userDataService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // 订单卡片的用户信息补全方式：sync 同步等待userCenter；async 仅等待很短时间，之后异步补全
+    @Value("${card.order.user-enrichment:async}")
+    private String userEnrichment;
+    
+    // 异步模式下创建卡片时等待用户信息的时间
+    @Value("${card.order.user-enrichment-wait-ms:150}")
+    private long userEnrichmentWaitMs;
+    
+    // 异步补全的超时时间，超时后卡片不再等待用户信息
+    @Value("${card.order.user-enrichment-timeout-ms:5000}")
+    private long userEnrichmentTimeoutMs;
+    
+    // 已创建但尚未保存的卡片的用户信息查询，卡片保存时取出；未保存的卡片一分钟后过期
+    private final Cache<String, CompletableFuture<JsonNode>> pendingUserLookups = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+    
+    // 补全完成的卡片ID
+    private final Sinks.Many<String> cardUpdates = Sinks.many().multicast().directBestEffort();
+    
+    @PostConstruct
+    public void registerMetrics() {
+        // 卡片存储大小监控
+        Gauge.builder("chat.cards", cardDatabase, Map::size)
+                .description("Number of message cards held in memory")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * 已保存的卡片及其预先序列化的UTF-8 JSON字节
+     * 卡片保存后视为不可变，更新时通过saveCard整体替换
+     */
+    private record StoredCard(MessageCard card, byte[] json) {
+    }
+    
     /**
      * 获取指定ID的消息卡片
      * 
@@ -42,7 +115,100 @@ public class MessageCardService {
      * @return 消息卡片，如果不存在则返回null
      */
     public MessageCard getCardById(String cardId) {
-        return cardDatabase.get(cardId);
+        StoredCard stored = cardDatabase.get(cardId);
+        return stored != null ? stored.card() : null;
+    }
+    
+    /**
+     * 获取指定ID卡片序列化后的JSON字节
+     * 
+     * @param cardId 卡片ID
+     * @return 卡片的UTF-8 JSON字节，如果不存在则返回null
+     */
+    public byte[] getCardJson(String cardId) {
+        CardStoreEvent event = new CardStoreEvent();
+        event.begin();
+        StoredCard stored = cardDatabase.get(cardId);
+        if (stored == null) {
+            commitEvent(event, "read", cardId, null, 0);
+            return null;
+        }
+        byte[] json = stored.json();
+        if (json == null) {
+            // 保存时序列化失败，在读取时重新尝试
+            try {
+                json = serializeCard(stored.card());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize message card: " + cardId, e);
+            }
+        }
+        commitEvent(event, "read", cardId, stored.card(), json.length);
+        return json;
+    }
+    
+    /**
+     * 批量获取卡片序列化后的JSON，组装为以卡片ID为键的JSON对象
+     * 不存在的卡片ID会被忽略
+     * 
+     * @param cardIds 卡片ID列表
+     * @return JSON对象的UTF-8字节
+     */
+    public byte[] getCardsJson(Collection<String> cardIds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('{');
+        boolean first = true;
+        for (String cardId : new LinkedHashSet<>(cardIds)) {
+            byte[] json = getCardJson(cardId);
+            if (json == null) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            try {
+                // 卡片ID作为JSON字符串写入，确保正确转义
+                out.writeBytes(objectMapper.writeValueAsBytes(cardId));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize card id: " + cardId, e);
+            }
+            out.write(':');
+            out.writeBytes(json);
+            first = false;
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+    
+    /**
+     * 获取消息中卡片标记引用的卡片，值为卡片预先序列化的JSON，可直接嵌入响应
+     * 
+     * @param message 包含@cards标记的消息
+     * @return 以卡片ID为键的卡片JSON，不存在的卡片会被忽略
+     */
+    public Map<String, RawValue> getReferencedCards(String message) {
+        Map<String, RawValue> cards = new LinkedHashMap<>();
+        for (String cardId : extractCardIds(message)) {
+            byte[] json = getCardJson(cardId);
+            if (json != null) {
+                cards.put(cardId, new RawValue(new String(json, StandardCharsets.UTF_8)));
+            }
+        }
+        return cards;
+    }
+    
+    /**
+     * 提取消息中所有卡片标记的卡片ID
+     */
+    public static Set<String> extractCardIds(String message) {
+        Set<String> cardIds = new LinkedHashSet<>();
+        if (message == null) {
+            return cardIds;
+        }
+        Matcher matcher = CARD_MARKUP_PATTERN.matcher(message);
+        while (matcher.find()) {
+            cardIds.add(matcher.group(1));
+        }
+        return cardIds;
     }
     
     /**
@@ -51,7 +217,9 @@ public class MessageCardService {
      * @return 所有消息卡片列表
      */
     public List<MessageCard> getAllCards() {
-        return new ArrayList<>(cardDatabase.values());
+        return cardDatabase.values().stream()
+                .map(StoredCard::card)
+                .collect(Collectors.toList());
     }
     
     /**
@@ -62,6 +230,7 @@ public class MessageCardService {
      */
     public List<MessageCard> getCardsByType(String type) {
         return cardDatabase.values().stream()
+                .map(StoredCard::card)
                 .filter(card -> card.getType().equals(type))
                 .collect(Collectors.toList());
     }
@@ -73,6 +242,9 @@ public class MessageCardService {
      * @return 保存后的卡片
      */
     public MessageCard saveCard(MessageCard card) {
+        CardStoreEvent event = new CardStoreEvent();
+        event.begin();
+        
         // 如果没有ID，生成一个新ID
         if (card.getId() == null || card.getId().isEmpty()) {
             card.setId(UUID.randomUUID().toString());
@@ -83,11 +255,42 @@ public class MessageCardService {
             card.setCreatedTime(LocalDateTime.now());
         }
         
-        cardDatabase.put(card.getId(), card);
+        // 保存时序列化一次，读取时直接返回字节；更新同一ID会替换旧的字节
+        byte[] json = null;
+        try {
+            json = serializeCard(card);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to pre-serialize message card: {}", card.getId(), e);
+        }
+        
+        cardDatabase.put(card.getId(), new StoredCard(card, json));
         log.debug("Saved message card: {}", card.getId());
+        commitEvent(event, "save", card.getId(), card, json != null ? json.length : 0);
+        enrichWhenUserArrives(card.getId());
         return card;
     }
     
+    /**
+     * 提交卡片存储操作的JFR事件
+     */
+    private static void commitEvent(CardStoreEvent event, String operation, String cardId, MessageCard card, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.cardId = cardId;
+            event.cardType = card != null ? card.getType() : null;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+    
+    /**
+     * 按基类类型序列化卡片，保留多态类型信息，与直接返回MessageCard时的输出一致
+     */
+    private byte[] serializeCard(MessageCard card) throws JsonProcessingException {
+        return objectMapper.writerFor(MessageCard.class).writeValueAsBytes(card);
+    }
+    
     /**
      * 删除消息卡片
      * 
@@ -95,7 +298,10 @@ public class MessageCardService {
      * @return 是否删除成功
      */
     public boolean deleteCard(String cardId) {
-        MessageCard removed = cardDatabase.remove(cardId);
+        CardStoreEvent event = new CardStoreEvent();
+        event.begin();
+        StoredCard removed = cardDatabase.remove(cardId);
+        commitEvent(event, "delete", cardId, removed != null ? removed.card() : null, 0);
         if (removed != null) {
             log.debug("Deleted message card: {}", cardId);
             return true;
@@ -287,7 +493,7 @@ public class MessageCardService {
 //            }
             
             // 尝试从MCP服务获取订单信息
-            com.fasterxml.jackson.databind.JsonNode orderData = orderDataService.getOrderByOrderNo(orderNumber);
+            OrderData orderData = orderDataService.getOrderDataByOrderNo(orderNumber);
             if (orderData != null) {
                 log.info("从MCP服务获取到订单信息: {}", orderNumber);
                 return createOrderCardFromData(orderData);
@@ -461,18 +667,18 @@ public class MessageCardService {
     /**
      * 从API返回的订单数据创建订单卡片
      */
-    private OrderMessageCard createOrderCardFromData(com.fasterxml.jackson.databind.JsonNode orderData) {
+    private OrderMessageCard createOrderCardFromData(OrderData orderData) {
         try {
-            String orderNumber = orderData.path("orderNo").asText();
-            Long orderId = orderData.path("id").asLong();
-            Long userId = orderData.path("userId").asLong();
+            String orderNumber = orderData.getOrderNo() != null ? orderData.getOrderNo() : "";
+            Long orderId = orderData.getId() != null ? orderData.getId() : 0L;
+            Long userId = orderData.getUserId() != null ? orderData.getUserId() : 0L;
             
             // 获取订单状态
-            int statusCode = orderData.path("status").asInt(0);
+            int statusCode = orderData.getStatus() != null ? orderData.getStatus() : 0;
             String orderStatus = getOrderStatusText(statusCode);
             
             // 获取订单时间
-            String orderTimeStr = orderData.path("createdAt").asText();
+            String orderTimeStr = orderData.getCreatedAt() != null ? orderData.getCreatedAt().asText() : "";
             LocalDateTime orderTime;
             try {
                 if (orderTimeStr.isEmpty()) {
@@ -489,27 +695,24 @@ public class MessageCardService {
             }
             
             // 获取订单金额
-            double totalAmount = orderData.path("amount").asDouble(0.0);
-            
-            // 获取用户信息
-            com.fasterxml.jackson.databind.JsonNode userData = userDataService.getUserById(userId);
-            String userName = "用户";
-            String userPhone = "";
-            String userAddress = orderData.path("address").asText("");
+            double totalAmount = orderData.getAmount() != null ? orderData.getAmount() : 0.0;
             
-            if (userData != null) {
-                userName = userData.path("username").asText("用户");
-                userPhone = userData.path("phone").asText("");
-                if (userPhone.length() > 7) {
-                    // 手机号脱敏处理
-                    userPhone = userPhone.substring(0, 3) + "****" + userPhone.substring(7);
-                }
+            // 获取用户信息：异步模式下只等待很短的时间，超时则先返回不含用户信息的卡片
+            String userAddress = orderData.getAddress() != null ? orderData.getAddress() : "";
+            CompletableFuture<JsonNode> userLookup = null;
+            JsonNode userData;
+            if (isAsyncUserEnrichment()) {
+                userLookup = lookupUser(userId);
+                userData = awaitUser(userLookup);
+            } else {
+                userData = userDataService.getUserById(userId);
             }
+            boolean userPending = userLookup != null && !userLookup.isDone();
             
             // 创建订单项
             List<OrderItem> items = new ArrayList<>();
-            Long itemId = orderData.path("itemId").asLong(0);
-            int quantity = orderData.path("quantity").asInt(1);
+            Long itemId = orderData.getItemId() != null ? orderData.getItemId() : 0L;
+            int quantity = orderData.getQuantity() != null ? orderData.getQuantity() : 1;
             
             // 这里应该有一个服务来获取商品信息，暂时用模拟数据
             String productName = "商品";
@@ -552,7 +755,7 @@ public class MessageCardService {
                     .build());
             
             // 构建订单卡片
-            return OrderMessageCard.builder()
+            OrderMessageCard.OrderMessageCardBuilder<?, ?> builder = OrderMessageCard.builder()
                     .id(UUID.randomUUID().toString())
                     .title("订单详情")
                     .description("订单" + orderNumber + "状态：" + orderStatus)
@@ -565,13 +768,127 @@ public class MessageCardService {
                     .totalAmount(totalAmount)
                     .items(items)
                     .userId(userId)
-                    .userName(userName)
-                    .userPhone(userPhone)
-                    .userAddress(userAddress)
-                    .build();
+                    .userAddress(userAddress);
+            if (userPending) {
+                OrderMessageCard card = builder.userName("").userPhone("").userPending(true).build();
+                // 卡片保存后再补全用户信息，避免补全结果被随后的保存覆盖
+                pendingUserLookups.put(card.getId(), userLookup);
+                meterRegistry.counter("card.user.enrichment", "outcome", "deferred").increment();
+                return card;
+            }
+            if (userLookup != null) {
+                meterRegistry.counter("card.user.enrichment", "outcome", "inline").increment();
+            }
+            return applyUserData(builder, userData).build();
         } catch (Exception e) {
             log.error("从API数据创建订单卡片时出错", e);
             return null;
         }
     }
+    
+    /**
+     * 将用户信息填入订单卡片，查询失败时使用默认用户名
+     */
+    private static OrderMessageCard.OrderMessageCardBuilder<?, ?> applyUserData(
+            OrderMessageCard.OrderMessageCardBuilder<?, ?> builder, JsonNode userData) {
+        String userName = "用户";
+        String userPhone = "";
+        if (userData != null) {
+            userName = userData.path("username").asText("用户");
+            userPhone = userData.path("phone").asText("");
+            if (userPhone.length() > 7) {
+                // 手机号脱敏处理
+                userPhone = userPhone.substring(0, 3) + "****" + userPhone.substring(7);
+            }
+        }
+        return builder.userName(userName).userPhone(userPhone).userPending(null);
+    }
+    
+    private boolean isAsyncUserEnrichment() {
+        return "async".equalsIgnoreCase(userEnrichment);
+    }
+    
+    /**
+     * 在弹性线程池上查询用户信息，超过补全超时时间或查询失败时结果为null
+     */
+    private CompletableFuture<JsonNode> lookupUser(Long userId) {
+        return Mono.fromCallable(() -> userDataService.getUserById(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(Duration.ofMillis(userEnrichmentTimeoutMs))
+                .onErrorResume(e -> {
+                    log.warn("用户信息补全失败，用户ID: {}", userId, e);
+                    return Mono.empty();
+                })
+                .toFuture();
+    }
+    
+    /**
+     * 在等待预算内等待用户信息，预算同时受本轮对话截止时间限制；未完成时返回null
+     */
+    private JsonNode awaitUser(CompletableFuture<JsonNode> userLookup) {
+        long waitMs = userEnrichmentWaitMs;
+        ChatDeadline deadline = ChatDeadline.current();
+        if (deadline != null) {
+            waitMs = deadline.boundMillis(waitMs);
+        }
+        try {
+            return userLookup.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException | ExecutionException e) {
+            // 查询错误已在lookupUser中转换为null，这里只会是等待超时
+            return null;
+        }
+    }
+    
+    /**
+     * 卡片保存后，在用户信息查询完成时补全卡片
+     */
+    private void enrichWhenUserArrives(String cardId) {
+        CompletableFuture<JsonNode> userLookup = pendingUserLookups.asMap().remove(cardId);
+        if (userLookup != null) {
+            userLookup.thenAccept(userData -> completeUserEnrichment(cardId, userData));
+        }
+    }
+    
+    /**
+     * 用补全的用户信息替换仍在等待的订单卡片，并通知订阅了该卡片的客户端
+     * 查询失败或超时时同样结束等待，卡片保留默认用户名
+     */
+    private void completeUserEnrichment(String cardId, JsonNode userData) {
+        StoredCard stored = cardDatabase.get(cardId);
+        if (stored == null || !(stored.card() instanceof OrderMessageCard card)
+                || !Boolean.TRUE.equals(card.getUserPending())) {
+            return;
+        }
+        saveCard(applyUserData(card.toBuilder(), userData).build());
+        meterRegistry.counter("card.user.enrichment", "outcome", userData != null ? "completed" : "missed")
+                .increment();
+        log.debug("Completed user enrichment of card: {}", cardId);
+        synchronized (cardUpdates) {
+            cardUpdates.tryEmitNext(cardId);
+        }
+    }
+    
+    /**
+     * 等待卡片补全完成，返回补全后卡片的JSON字节
+     * 卡片不在等待补全时立即返回当前内容；卡片不存在时不返回任何内容
+     * 
+     * @param cardId 卡片ID
+     * @return 补全后卡片的UTF-8 JSON字节
+     */
+    public Mono<byte[]> awaitCompletedCard(String cardId) {
+        // 先订阅更新，再检查当前状态，避免错过两者之间完成的补全
+        return Flux.merge(
+                        cardUpdates.asFlux().filter(cardId::equals).mapNotNull(this::getCardJson),
+                        Mono.fromCallable(() -> isUserPending(cardId) ? null : getCardJson(cardId)))
+                .next();
+    }
+    
+    private boolean isUserPending(String cardId) {
+        StoredCard stored = cardDatabase.get(cardId);
+        return stored != null && stored.card() instanceof OrderMessageCard card
+                && Boolean.TRUE.equals(card.getUserPending());
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.example.mcpclient.service;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Concurrency slots up to a limit, with a bounded FIFO queue for a bounded time in front of them.
+ * The limit and the rejections are left to the owner: the limit supplier is read and the rejection factory
+ * is called holding this queue's monitor, so they may read {@link #getInFlight()} and {@link #getQueued()},
+ * and state they share with the release callbacks of {@link Permit#release(LongConsumer)} needs no other lock.
+ */
+public class PermitQueue {
+
+    public static final String REASON_QUEUE_FULL = "queue_full";
+    public static final String REASON_QUEUE_TIMEOUT = "queue_timeout";
+
+    private static final int QUEUED = 0;
+    private static final int GRANTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final IntSupplier limit;
+    private final int maxQueueSize;
+    private final Duration maxWait;
+    private final Function<String, ? extends RuntimeException> rejection;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    // Guarded by this
+    private int inFlight;
+
+    /**
+     * @param limit Slots that may be held at once, read on every acquire and release
+     * @param maxQueueSize Acquires that may wait for a slot
+     * @param maxWait How long an acquire may wait for a slot
+     * @param rejection The error of a rejected acquire, given {@link #REASON_QUEUE_FULL} or {@link #REASON_QUEUE_TIMEOUT}
+     */
+    public PermitQueue(IntSupplier limit, int maxQueueSize, Duration maxWait,
+                       Function<String, ? extends RuntimeException> rejection) {
+        this.limit = limit;
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.maxWait = maxWait;
+        this.rejection = rejection;
+    }
+
+    /**
+     * Acquire a slot. The returned Mono emits a {@link Permit} as soon as a slot is free, or fails with the
+     * rejection when the queue is full or the wait exceeds the maximum. Every emitted permit must be released.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            synchronized (this) {
+                if (inFlight < limit.getAsInt() && waiters.isEmpty()) {
+                    inFlight++;
+                    Permit permit = new Permit();
+                    // Only invoked if the subscriber cancels before the permit is delivered
+                    sink.onCancel(permit::release);
+                    sink.success(permit);
+                    return;
+                }
+                if (waiters.size() >= maxQueueSize) {
+                    sink.error(rejection.apply(REASON_QUEUE_FULL));
+                    return;
+                }
+                waiter = new Waiter(sink);
+                waiters.addLast(waiter);
+            }
+
+            Disposable timeout = Schedulers.parallel().schedule(() -> expire(waiter), maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            sink.onDispose(timeout);
+            sink.onCancel(() -> {
+                if (waiter.state.compareAndSet(QUEUED, CANCELLED)) {
+                    synchronized (this) {
+                        waiters.remove(waiter);
+                    }
+                } else if (waiter.state.get() == GRANTED) {
+                    // The slot was handed over while the subscriber was cancelling
+                    waiter.permit.release();
+                }
+            });
+        });
+    }
+
+    private void expire(Waiter waiter) {
+        if (waiter.state.compareAndSet(QUEUED, CANCELLED)) {
+            RuntimeException rejected;
+            synchronized (this) {
+                waiters.remove(waiter);
+                rejected = rejection.apply(REASON_QUEUE_TIMEOUT);
+            }
+            waiter.sink.error(rejected);
+        }
+    }
+
+    private void onRelease(long heldNanos, LongConsumer callback) {
+        Waiter next = null;
+        synchronized (this) {
+            callback.accept(heldNanos);
+            inFlight--;
+
+            while (inFlight < limit.getAsInt() && !waiters.isEmpty()) {
+                Waiter candidate = waiters.pollFirst();
+                candidate.permit = new Permit();
+                if (candidate.state.compareAndSet(QUEUED, GRANTED)) {
+                    inFlight++;
+                    next = candidate;
+                    break;
+                }
+            }
+        }
+        if (next != null) {
+            next.sink.success(next.permit);
+        }
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    /**
+     * A slot, held until it is released
+     */
+    public class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Free the slot; only the first release counts
+         */
+        public void release() {
+            release(heldNanos -> { });
+        }
+
+        /**
+         * Free the slot, first passing how long it was held to the callback, which runs holding the queue's
+         * monitor before the slot goes to the next waiter; only the first release counts
+         */
+        public void release(LongConsumer callback) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(System.nanoTime() - startNanos, callback);
+            }
+        }
+    }
+
+    private static class Waiter {
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.mcpclient.service;
+
+/**
+ * Rough estimate of the number of DeepSeek tokens in a text, without running the tokenizer.
+ * Uses the ratios published by DeepSeek: about 0.6 tokens per Chinese character and 0.3 tokens
+ * per English character, digit or symbol.
+ */
+public final class TokenEstimator {
+
+    private static final double CJK_TOKENS_PER_CHAR = 0.6;
+    private static final double OTHER_TOKENS_PER_CHAR = 0.3;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimated token count of the text, zero for null or empty text
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else if (!Character.isWhitespace(codePoint)) {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return (int) Math.ceil(cjk * CJK_TOKENS_PER_CHAR + other * OTHER_TOKENS_PER_CHAR);
+    }
+
+    /**
+     * Whether the code point is a Chinese, Japanese or Korean character
+     */
+    static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * BM25 index over the names and descriptions of the discovered MCP tools, used to describe only the tools
+ * relevant to a message in the system prompt once the whole catalog no longer fits the prompt's token budget.
+ * Tool names are split at camel case boundaries and Chinese, Japanese and Korean text is indexed as
+ * character bigrams. The index follows the registry version of {@link McpServiceDiscoveryService} and only
+ * re-indexes the tools that were added, removed or rebuilt since the last version.
+ */
+@Service
+@Slf4j
+public class ToolRetrievalIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double COMMON_TERM_RATIO = 0.9;
+
+    private static final Pattern CAMEL_CASE = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])|(?<=[A-Z])(?=[A-Z][a-z])");
+
+    private final McpServiceDiscoveryService discoveryService;
+    private final ObjectMapper objectMapper;
+    private final int maxTools;
+    private final int tokenBudget;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by the lock
+    private long indexedVersion = -1;
+    private final Map<String, IndexedTool> tools = new HashMap<>();
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    private long totalTokens;
+
+    /**
+     * A tool with its term frequencies, indexed under its service and name
+     */
+    private record IndexedTool(String key, McpToolInfo tool, Map<String, Integer> termFrequencies, int length,
+                               int tokens) {
+    }
+
+    private record ScoredTool(IndexedTool tool, double score) {
+    }
+
+    public ToolRetrievalIndex(
+            McpServiceDiscoveryService discoveryService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${llm.tools.max-tools:20}") int maxTools,
+            @Value("${llm.tools.token-budget:3000}") int tokenBudget
+    ) {
+        this.discoveryService = discoveryService;
+        this.objectMapper = objectMapper;
+        this.maxTools = Math.max(1, maxTools);
+        this.tokenBudget = Math.max(0, tokenBudget);
+
+        Gauge.builder("llm.tools.index.terms", this, index -> index.read(index.postings::size))
+                .description("Number of distinct terms in the tool retrieval index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether all discovered tools fit into the prompt's tool budget, so that no selection is needed
+     */
+    public boolean catalogFitsBudget() {
+        refreshIfChanged();
+        return read(() -> tools.size() <= maxTools && totalTokens <= tokenBudget);
+    }
+
+    /**
+     * The tools best matching the message, at most {@code llm.tools.max-tools} of them and together within
+     * {@code llm.tools.token-budget} estimated tokens, best match first. Empty when no term of the message
+     * matches a tool.
+     */
+    public List<McpToolInfo> search(String message) {
+        refreshIfChanged();
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(message));
+        List<ScoredTool> ranked = read(() -> rank(queryTerms));
+        List<McpToolInfo> selected = new ArrayList<>();
+        int remaining = tokenBudget;
+        for (ScoredTool scored : ranked) {
+            if (selected.size() >= maxTools) {
+                break;
+            }
+            if (scored.tool().tokens() <= remaining) {
+                selected.add(scored.tool().tool());
+                remaining -= scored.tool().tokens();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The leading tools of the list that fit into the tool budget, for when the message matches no tool
+     */
+    public List<McpToolInfo> limitToBudget(List<McpToolInfo> candidates) {
+        List<McpToolInfo> selected = new ArrayList<>();
+        int remaining = tokenBudget;
+        for (McpToolInfo tool : candidates) {
+            if (selected.size() >= maxTools) {
+                break;
+            }
+            int tokens = estimateTokens(tool);
+            if (tokens <= remaining) {
+                selected.add(tool);
+                remaining -= tokens;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The best scoring tools, best first. Keeps twice as many candidates as can be selected, leaving room
+     * for tools that are skipped because they do not fit the remaining budget.
+     */
+    private List<ScoredTool> rank(Set<String> queryTerms) {
+        if (tools.isEmpty()) {
+            return List.of();
+        }
+        int documents = tools.size();
+        double averageLength = Math.max(1.0, (double) totalLength / documents);
+        Map<String, double[]> scores = new HashMap<>();
+        for (String term : queryTerms) {
+            Map<String, Integer> posting = postings.get(term);
+            // Terms found in nearly every tool, such as the "mcp" of service names, do not tell tools apart
+            if (posting == null || documents > maxTools && posting.size() > documents * COMMON_TERM_RATIO) {
+                continue;
+            }
+            double idf = Math.log(1 + (documents - posting.size() + 0.5) / (posting.size() + 0.5));
+            posting.forEach((key, frequency) -> {
+                double norm = K1 * (1 - B + B * tools.get(key).length() / averageLength);
+                scores.computeIfAbsent(key, k -> new double[1])[0] += idf * frequency * (K1 + 1) / (frequency + norm);
+            });
+        }
+        
+        Comparator<ScoredTool> order = Comparator.comparingDouble(ScoredTool::score)
+                .thenComparing(scored -> scored.tool().key(), Comparator.reverseOrder());
+        int candidates = maxTools * 2;
+        PriorityQueue<ScoredTool> best = new PriorityQueue<>(candidates + 1, order);
+        scores.forEach((key, score) -> {
+            if (best.size() < candidates || score[0] > best.peek().score()) {
+                best.add(new ScoredTool(tools.get(key), score[0]));
+                if (best.size() > candidates) {
+                    best.poll();
+                }
+            }
+        });
+        List<ScoredTool> ranked = new ArrayList<>(best);
+        ranked.sort(order.reversed());
+        return ranked;
+    }
+
+    /**
+     * Bring the index up to the current registry version. Tools whose instance is unchanged keep their
+     * postings, as discovery keeps the tool instances of services that did not change.
+     */
+    private void refreshIfChanged() {
+        long version = discoveryService.getRegistryVersion();
+        if (read(() -> indexedVersion == version)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (indexedVersion == version) {
+                return;
+            }
+            Map<String, McpToolInfo> current = new HashMap<>();
+            for (McpToolInfo tool : discoveryService.getAllTools()) {
+                current.put(key(tool), tool);
+            }
+            int removed = 0;
+            int added = 0;
+            for (String key : new ArrayList<>(tools.keySet())) {
+                McpToolInfo tool = current.get(key);
+                if (tool == null || tool != tools.get(key).tool()) {
+                    remove(key);
+                    removed++;
+                }
+            }
+            for (Map.Entry<String, McpToolInfo> entry : current.entrySet()) {
+                if (!tools.containsKey(entry.getKey())) {
+                    add(entry.getKey(), entry.getValue());
+                    added++;
+                }
+            }
+            indexedVersion = version;
+            log.debug("Tool retrieval index at registry version {}: {} tools, {} terms, {} re-indexed, {} dropped",
+                    version, tools.size(), postings.size(), added, removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(String key, McpToolInfo tool) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        List<String> terms = new ArrayList<>(tokenize(tool.getName()));
+        // The name is the strongest signal, count its terms twice
+        terms.addAll(tokenize(tool.getName()));
+        terms.addAll(tokenize(tool.getDescription()));
+        terms.addAll(tokenize(tool.getDomain()));
+        terms.addAll(tokenize(tool.getServiceName()));
+        for (String term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        IndexedTool indexed = new IndexedTool(key, tool, termFrequencies, terms.size(), estimateTokens(tool));
+        tools.put(key, indexed);
+        termFrequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(key, frequency));
+        totalLength += indexed.length();
+        totalTokens += indexed.tokens();
+    }
+
+    private void remove(String key) {
+        IndexedTool indexed = tools.remove(key);
+        for (String term : indexed.termFrequencies().keySet()) {
+            Map<String, Integer> posting = postings.get(term);
+            posting.remove(key);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= indexed.length();
+        totalTokens -= indexed.tokens();
+    }
+
+    private static String key(McpToolInfo tool) {
+        return tool.getServiceName() + "/" + tool.getName();
+    }
+
+    /**
+     * Estimated prompt tokens of the tool, as it is serialized into the system prompt
+     */
+    private int estimateTokens(McpToolInfo tool) {
+        try {
+            return TokenEstimator.estimate(objectMapper.writeValueAsString(tool));
+        } catch (JsonProcessingException e) {
+            return TokenEstimator.estimate(tool.getName()) + TokenEstimator.estimate(tool.getDescription());
+        }
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Split text into index terms: lower-cased words, with identifiers also split at camel case boundaries,
+     * and bigrams of Chinese, Japanese and Korean text (a lone character is kept as it is)
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (TokenEstimator.isCjk(codePoint)) {
+                flushWord(word, terms);
+                cjk.appendCodePoint(codePoint);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjk(cjk, terms);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(word, terms);
+                flushCjk(cjk, terms);
+            }
+            i += Character.charCount(codePoint);
+        }
+        flushWord(word, terms);
+        flushCjk(cjk, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (word.isEmpty()) {
+            return;
+        }
+        for (String part : CAMEL_CASE.split(word)) {
+            terms.add(part.toLowerCase(Locale.ROOT));
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCjk(StringBuilder cjk, List<String> terms) {
+        int[] codePoints = cjk.codePoints().toArray();
+        if (codePoints.length == 1) {
+            terms.add(new String(codePoints, 0, 1));
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            terms.add(new String(codePoints, i, 2));
+        }
+        cjk.setLength(0);
+    }
+}
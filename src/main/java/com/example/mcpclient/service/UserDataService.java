@@ -2,15 +2,9 @@ package com.example.mcpclient.service;
 
 import com.example.mcpclient.model.McpToolInfo;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -26,9 +20,7 @@ public class UserDataService {
     private McpServiceDiscoveryService mcpServiceDiscoveryService;
     
     @Autowired
-    private ObjectMapper objectMapper;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
+    private McpToolClient mcpToolClient;
     
     /**
      * 根据用户ID获取用户信息
@@ -50,10 +42,10 @@ public class UserDataService {
             params.put("id", userId);
             
             // 调用MCP接口
-            JsonNode result = callMcpTool(tool, params);
-            if (result != null && result.has("data") && !result.get("data").isNull()) {
+            JsonNode data = mcpToolClient.callToolForData(tool, params, JsonNode.class);
+            if (data != null) {
                 log.info("成功获取用户信息，用户ID: {}", userId);
-                return result.get("data");
+                return data;
             } else {
                 log.warn("未找到用户信息，用户ID: {}", userId);
                 return null;
@@ -84,10 +76,10 @@ public class UserDataService {
             params.put("username", username);
             
             // 调用MCP接口
-            JsonNode result = callMcpTool(tool, params);
-            if (result != null && result.has("data") && !result.get("data").isNull()) {
+            JsonNode data = mcpToolClient.callToolForData(tool, params, JsonNode.class);
+            if (data != null) {
                 log.info("成功获取用户信息，用户名: {}", username);
-                return result.get("data");
+                return data;
             } else {
                 log.warn("未找到用户信息，用户名: {}", username);
                 return null;
@@ -97,35 +89,4 @@ public class UserDataService {
             return null;
         }
     }
-    
-    /**
-     * 调用MCP工具
-     * 
-     * @param tool MCP工具信息
-     * @param params 请求参数
-     * @return 响应的JSON对象
-     */
-    private JsonNode callMcpTool(McpToolInfo tool, Map<String, Object> params) throws Exception {
-        // 获取连接详情
-        Map<String, String> connectionDetails = tool.getConnectionDetails();
-        String ip = connectionDetails.get("ip");
-        String port = connectionDetails.get("port");
-        
-        // 构建请求URL
-        String url = String.format("http://%s:%s/api/mcp/tools/%s", ip, port, tool.getName());
-        
-        // 构建请求头
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Content-Type", "application/json");
-        
-        // 构建请求体
-        String requestBody = objectMapper.writeValueAsString(params);
-        
-        // 发送请求
-        HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-        
-        // 解析响应
-        return objectMapper.readTree(response.getBody());
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
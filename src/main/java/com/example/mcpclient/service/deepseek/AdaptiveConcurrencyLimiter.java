@@ -0,0 +1,168 @@
+package com.example.mcpclient.service.deepseek;
+
+import com.example.mcpclient.service.PermitQueue;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Vegas style adaptive concurrency limiter for outbound DeepSeek calls.
+ * The limit grows while observed latency stays close to the no-load latency and shrinks
+ * when requests queue up at the provider or get rejected (429/503/timeouts).
+ * Requests above the limit wait in a bounded queue for a bounded time and are rejected
+ * with {@link DeepSeekOverloadedException} beyond that.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration maxWait;
+    private final double backoffRatio;
+    private final int rttProbeSamples;
+    private final PermitQueue permits;
+
+    // Guarded by permits
+    private double limit;
+    private long rttNoLoadNanos;
+    private int samplesSinceProbe;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${deepseek.limiter.initial-limit:10}") int initialLimit,
+            @Value("${deepseek.limiter.min-limit:1}") int minLimit,
+            @Value("${deepseek.limiter.max-limit:100}") int maxLimit,
+            @Value("${deepseek.limiter.max-queue-size:50}") int maxQueueSize,
+            @Value("${deepseek.limiter.max-wait-ms:2000}") long maxWaitMs,
+            @Value("${deepseek.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${deepseek.limiter.rtt-probe-samples:500}") int rttProbeSamples,
+            MeterRegistry meterRegistry
+    ) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+        this.backoffRatio = backoffRatio;
+        this.rttProbeSamples = Math.max(1, rttProbeSamples);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.permits = new PermitQueue(() -> (int) limit, maxQueueSize, maxWait, this::reject);
+
+        Gauge.builder("deepseek.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for DeepSeek calls")
+                .register(meterRegistry);
+        Gauge.builder("deepseek.limiter.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("DeepSeek calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("deepseek.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("DeepSeek calls waiting for a concurrency slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Acquire a slot for one call. The returned Mono emits a {@link Permit} as soon as a slot
+     * is free, or fails with {@link DeepSeekOverloadedException} when the queue is full or the
+     * wait exceeds the configured maximum. Every emitted permit must be released exactly once.
+     */
+    public Mono<Permit> acquire() {
+        return permits.acquire().map(Permit::new);
+    }
+
+    /**
+     * Called holding the permit queue's monitor
+     */
+    private DeepSeekOverloadedException reject(String reason) {
+        if (PermitQueue.REASON_QUEUE_TIMEOUT.equals(reason)) {
+            return new DeepSeekOverloadedException(
+                    "Timed out after " + maxWait.toMillis() + "ms waiting for a DeepSeek concurrency slot");
+        }
+        return new DeepSeekOverloadedException(
+                "DeepSeek concurrency limit reached (" + (int) limit + " in flight, " + permits.getQueued() + " queued)");
+    }
+
+    /**
+     * Adjust the limit to how a call ended. Called holding the permit queue's monitor.
+     */
+    private void onRelease(long rttNanos, Outcome outcome) {
+        if (outcome == Outcome.DROPPED) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (outcome == Outcome.SUCCESS) {
+            updateLimit(rttNanos);
+        }
+    }
+
+    /**
+     * Vegas update: estimate how many requests are queued at the provider from the ratio
+     * between the no-load RTT and the observed RTT, and move the limit towards keeping that
+     * queue between alpha and beta.
+     */
+    private void updateLimit(long rttNanos) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        // Periodically forget the no-load RTT so the limiter adapts when the baseline shifts
+        if (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos || ++samplesSinceProbe >= rttProbeSamples) {
+            rttNoLoadNanos = rttNanos;
+            samplesSinceProbe = 0;
+            return;
+        }
+
+        double logLimit = Math.max(1, Math.log10(limit));
+        double alpha = 3 * logLimit;
+        double beta = 6 * logLimit;
+        double queueSize = Math.ceil(limit * (1 - (double) rttNoLoadNanos / rttNanos));
+
+        double newLimit = limit;
+        // Only grow the limit when it is actually being used
+        if (queueSize <= alpha && permits.getInFlight() * 2 >= limit) {
+            newLimit = limit + logLimit;
+        } else if (queueSize >= beta) {
+            newLimit = limit - logLimit;
+        }
+        limit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+    }
+
+    public int getLimit() {
+        synchronized (permits) {
+            return (int) limit;
+        }
+    }
+
+    public int getInFlight() {
+        return permits.getInFlight();
+    }
+
+    public int getQueued() {
+        return permits.getQueued();
+    }
+
+    /**
+     * How a call holding a permit ended
+     */
+    public enum Outcome {
+        /** The call completed; its latency is used to adjust the limit */
+        SUCCESS,
+        /** The provider rejected or timed out the call; the limit backs off */
+        DROPPED,
+        /** The call failed for an unrelated reason or was cancelled; no sample is taken */
+        IGNORED
+    }
+
+    /**
+     * A concurrency slot held for the duration of one call
+     */
+    public class Permit {
+        private final PermitQueue.Permit slot;
+
+        private Permit(PermitQueue.Permit slot) {
+            this.slot = slot;
+        }
+
+        public void release(Outcome outcome) {
+            slot.release(rttNanos -> onRelease(rttNanos, outcome));
+        }
+    }
+}
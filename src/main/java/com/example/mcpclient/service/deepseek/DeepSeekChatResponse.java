@@ -45,5 +45,12 @@ public class DeepSeekChatResponse {
         
         @JsonProperty("total_tokens")
         private int totalTokens;
+        
+        // Prompt tokens served from DeepSeek's context (prefix) cache
+        @JsonProperty("prompt_cache_hit_tokens")
+        private int promptCacheHitTokens;
+        
+        @JsonProperty("prompt_cache_miss_tokens")
+        private int promptCacheMissTokens;
     }
 } 
\ No newline at end of file
@@ -1,16 +1,30 @@
 package com.example.mcpclient.service.deepseek;
 
+import com.example.mcpclient.service.ChatDeadline;
+import com.example.mcpclient.service.jfr.DeepSeekRequestEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.netty.handler.timeout.ReadTimeoutException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.context.Context;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Client for interacting with the DeepSeek API
@@ -23,15 +37,32 @@ public class DeepSeekClient {
     private final String model;
     private final Integer maxTokens;
     private final Double temperature;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    private final Counter promptCacheHitTokens;
+    private final Counter promptCacheMissTokens;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final DeepSeekRetryPolicy retryPolicy;
+    private final Duration requestDeadline;
+    private final ObservationRegistry observationRegistry;
 
     public DeepSeekClient(
             @Value("${deepseek.api-key}") String apiKey,
             @Value("${deepseek.base-url}") String baseUrl,
             @Value("${deepseek.model}") String model,
             @Value("${deepseek.max-tokens}") Integer maxTokens,
-            @Value("${deepseek.temperature}") Double temperature
+            @Value("${deepseek.temperature}") Double temperature,
+            @Value("${deepseek.request-deadline-ms:30000}") long requestDeadlineMs,
+            MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry,
+            WebClient.Builder webClientBuilder,
+            HttpClient deepSeekHttpClient,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            DeepSeekRetryPolicy retryPolicy
     ) {
-        this.webClient = WebClient.builder()
+        // Spring Boot's builder instruments each request with a client span and a traceparent header
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(deepSeekHttpClient))
                 .baseUrl(baseUrl)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
@@ -39,6 +70,26 @@ public class DeepSeekClient {
         this.model = model;
         this.maxTokens = maxTokens;
         this.temperature = temperature;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.retryPolicy = retryPolicy;
+        this.requestDeadline = Duration.ofMillis(requestDeadlineMs);
+        this.observationRegistry = observationRegistry;
+        this.promptTokens = Counter.builder("deepseek.tokens")
+                .tag("type", "prompt")
+                .description("Prompt tokens billed by DeepSeek")
+                .register(meterRegistry);
+        this.completionTokens = Counter.builder("deepseek.tokens")
+                .tag("type", "completion")
+                .description("Completion tokens billed by DeepSeek")
+                .register(meterRegistry);
+        this.promptCacheHitTokens = Counter.builder("deepseek.tokens")
+                .tag("type", "prompt_cache_hit")
+                .description("Prompt tokens served from the DeepSeek context cache")
+                .register(meterRegistry);
+        this.promptCacheMissTokens = Counter.builder("deepseek.tokens")
+                .tag("type", "prompt_cache_miss")
+                .description("Prompt tokens not found in the DeepSeek context cache")
+                .register(meterRegistry);
         
         log.info("DeepSeek client initialized with model: {}", model);
     }
@@ -56,15 +107,126 @@ public class DeepSeekClient {
         
         log.debug("Sending chat completion request to DeepSeek API with {} messages", messages.size());
         
-        return webClient.post()
-                .uri("/v1/chat/completions")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(DeepSeekChatResponse.class)
-                .doOnSuccess(response -> log.debug("Received response from DeepSeek API: {}", response))
+        // One span per chat completion, covering limiter queueing and retries, with the attempts as child spans
+        return Mono.deferContextual(context -> {
+                    // The request deadline, shortened to the deadline of the chat turn when called within one
+                    long deadlineNanos = System.nanoTime() + requestDeadline.toNanos();
+                    ChatDeadline chatDeadline = context.getOrDefault(ChatDeadline.CONTEXT_KEY, null);
+                    if (chatDeadline != null && chatDeadline.nanoTime() - deadlineNanos < 0) {
+                        deadlineNanos = chatDeadline.nanoTime();
+                    }
+                    Mono<DeepSeekChatResponse> call = call(request, deadlineNanos);
+                    
+                    Observation observation = Observation.createNotStarted("deepseek.chat", observationRegistry)
+                            .contextualName("deepseek chat completion")
+                            .parentObservation(context.getOrDefault(ObservationThreadLocalAccessor.KEY, null))
+                            .lowCardinalityKeyValue("model", model)
+                            .start();
+                    DeepSeekRequestEvent event = new DeepSeekRequestEvent();
+                    event.begin();
+                    return call.contextWrite(Context.of(ObservationThreadLocalAccessor.KEY, observation))
+                            .doOnSuccess(response -> {
+                                tagUsage(observation, response);
+                                commitEvent(event, messages.size(), response, "success");
+                            })
+                            .doOnError(error -> {
+                                observation.error(error);
+                                commitEvent(event, messages.size(), null, "error");
+                            })
+                            .doOnCancel(() -> commitEvent(event, messages.size(), null, "cancelled"))
+                            .doFinally(signal -> observation.stop());
+                })
+                .doOnSuccess(response -> {
+                    log.debug("Received response from DeepSeek API: {}", response);
+                    recordUsage(response);
+                })
                 .doOnError(error -> log.error("Error calling DeepSeek API: {}", error.getMessage()));
     }
 
+    /**
+     * Call the chat completion endpoint, failing with a {@link TimeoutException} at the deadline.
+     * Each attempt holds a slot of the adaptive concurrency limiter until it completes, fails or is cancelled;
+     * transient failures are retried within the retry budget and the deadline.
+     */
+    private Mono<DeepSeekChatResponse> call(DeepSeekChatRequest request, long deadlineNanos) {
+        return Mono.usingWhen(
+                        concurrencyLimiter.acquire(),
+                        permit -> webClient.post()
+                                .uri("/v1/chat/completions")
+                                .bodyValue(request)
+                                .retrieve()
+                                .bodyToMono(DeepSeekChatResponse.class),
+                        permit -> Mono.fromRunnable(() -> permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS)),
+                        (permit, error) -> Mono.fromRunnable(() -> permit.release(classify(error))),
+                        permit -> Mono.fromRunnable(() -> permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED)))
+                .retryWhen(retryPolicy.forCall(deadlineNanos))
+                .timeout(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+    }
+
+    /**
+     * Classify a failed call for the concurrency limiter: provider rejections and timeouts
+     * indicate overload, anything else carries no latency signal.
+     */
+    private static AdaptiveConcurrencyLimiter.Outcome classify(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            if (status == 429 || status == 503) {
+                return AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+            }
+        } else if (error instanceof TimeoutException || error.getCause() instanceof TimeoutException
+                || error.getCause() instanceof ReadTimeoutException) {
+            return AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+        }
+        return AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+    }
+
+    /**
+     * Commit the JFR event of a completed, failed or cancelled chat completion
+     */
+    private void commitEvent(DeepSeekRequestEvent event, int messageCount, DeepSeekChatResponse response, String outcome) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.model = model;
+        event.messages = messageCount;
+        event.outcome = outcome;
+        if (response != null && response.getUsage() != null) {
+            event.promptTokens = response.getUsage().getPromptTokens();
+            event.completionTokens = response.getUsage().getCompletionTokens();
+            event.promptCacheHitTokens = response.getUsage().getPromptCacheHitTokens();
+        }
+        event.commit();
+    }
+
+    /**
+     * Add the token usage of a response to its span
+     */
+    private static void tagUsage(Observation observation, DeepSeekChatResponse response) {
+        if (response == null || response.getUsage() == null) {
+            return;
+        }
+        DeepSeekChatResponse.DeepSeekUsage usage = response.getUsage();
+        observation.highCardinalityKeyValue("tokens.prompt", String.valueOf(usage.getPromptTokens()))
+                .highCardinalityKeyValue("tokens.completion", String.valueOf(usage.getCompletionTokens()))
+                .highCardinalityKeyValue("tokens.prompt_cache_hit", String.valueOf(usage.getPromptCacheHitTokens()))
+                .highCardinalityKeyValue("tokens.prompt_cache_miss", String.valueOf(usage.getPromptCacheMissTokens()));
+    }
+
+    /**
+     * Record token usage and context cache effectiveness from the usage block of a response
+     */
+    private void recordUsage(DeepSeekChatResponse response) {
+        if (response == null || response.getUsage() == null) {
+            return;
+        }
+        DeepSeekChatResponse.DeepSeekUsage usage = response.getUsage();
+        promptTokens.increment(usage.getPromptTokens());
+        completionTokens.increment(usage.getCompletionTokens());
+        promptCacheHitTokens.increment(usage.getPromptCacheHitTokens());
+        promptCacheMissTokens.increment(usage.getPromptCacheMissTokens());
+    }
+
     /**
      * Convenience method to send a simple message with system context
      */
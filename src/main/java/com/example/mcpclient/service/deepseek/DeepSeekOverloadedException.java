@@ -0,0 +1,12 @@
+package com.example.mcpclient.service.deepseek;
+
+/**
+ * Thrown when a DeepSeek call is rejected locally because the concurrency limit is reached
+ * and the request could not be queued or waited too long for a slot.
+ */
+public class DeepSeekOverloadedException extends RuntimeException {
+
+    public DeepSeekOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.mcpclient.service.deepseek;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retry policy for DeepSeek chat completions, which are idempotent.
+ * Transient failures (429, 5xx gateway errors, connection failures and timeouts) are retried
+ * with decorrelated-jitter backoff, honoring {@code Retry-After} when the provider sends it.
+ * Retries are capped by a {@link RetryBudget} and never scheduled past the call's deadline.
+ */
+@Component
+@Slf4j
+public class DeepSeekRetryPolicy {
+
+    private final int maxRetries;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration maxRetryAfter;
+    private final RetryBudget retryBudget;
+
+    private final Counter retried;
+    private final Counter budgetExhausted;
+    private final Counter deadlineExceeded;
+
+    public DeepSeekRetryPolicy(
+            @Value("${deepseek.retry.max-retries:2}") int maxRetries,
+            @Value("${deepseek.retry.base-delay-ms:200}") long baseDelayMs,
+            @Value("${deepseek.retry.max-delay-ms:5000}") long maxDelayMs,
+            @Value("${deepseek.retry.max-retry-after-ms:10000}") long maxRetryAfterMs,
+            @Value("${deepseek.retry.budget-ratio:0.1}") double budgetRatio,
+            @Value("${deepseek.retry.budget-min-per-second:1}") int budgetMinPerSecond,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelay = Duration.ofMillis(baseDelayMs);
+        this.maxDelay = Duration.ofMillis(maxDelayMs);
+        this.maxRetryAfter = Duration.ofMillis(maxRetryAfterMs);
+        this.retryBudget = new RetryBudget(budgetRatio, budgetMinPerSecond, 10);
+
+        this.retried = retryCounter(meterRegistry, "retried");
+        this.budgetExhausted = retryCounter(meterRegistry, "budget_exhausted");
+        this.deadlineExceeded = retryCounter(meterRegistry, "deadline_exceeded");
+    }
+
+    private static Counter retryCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("deepseek.retries")
+                .tag("outcome", outcome)
+                .description("DeepSeek retry decisions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Create the retry spec for one call.
+     * Also counts the call towards the retry budget.
+     *
+     * @param deadlineNanos The {@link System#nanoTime()} by which the whole call must be done
+     */
+    public Retry forCall(long deadlineNanos) {
+        retryBudget.recordRequest();
+        return new Retry() {
+            @Override
+            public Flux<Long> generateCompanion(Flux<RetrySignal> retrySignals) {
+                // Per-call backoff state for decorrelated jitter
+                long[] previousDelayMs = {baseDelay.toMillis()};
+                return retrySignals.concatMap(signal -> {
+                    Throwable failure = signal.failure();
+                    if (signal.totalRetries() >= maxRetries || !isRetryable(failure)) {
+                        return Mono.error(failure);
+                    }
+
+                    Duration delay = retryAfter(failure);
+                    if (delay == null) {
+                        delay = nextDelay(previousDelayMs[0]);
+                        previousDelayMs[0] = delay.toMillis();
+                    } else if (delay.compareTo(maxRetryAfter) > 0) {
+                        log.debug("DeepSeek Retry-After of {}ms exceeds maximum, not retrying", delay.toMillis());
+                        return Mono.error(failure);
+                    }
+
+                    if (System.nanoTime() + delay.toNanos() >= deadlineNanos) {
+                        deadlineExceeded.increment();
+                        return Mono.error(failure);
+                    }
+                    if (!retryBudget.tryAcquireRetry()) {
+                        budgetExhausted.increment();
+                        log.warn("DeepSeek retry budget exhausted, not retrying: {}", failure.getMessage());
+                        return Mono.error(failure);
+                    }
+
+                    retried.increment();
+                    log.info("Retrying DeepSeek call in {}ms (retry {}): {}",
+                            delay.toMillis(), signal.totalRetries() + 1, failure.getMessage());
+                    return Mono.delay(delay).thenReturn(signal.totalRetries());
+                });
+            }
+        };
+    }
+
+    /**
+     * Decorrelated jitter: sleep = min(cap, random(base, previous * 3))
+     */
+    Duration nextDelay(long previousDelayMs) {
+        long base = baseDelay.toMillis();
+        long upper = Math.max(base + 1, previousDelayMs * 3);
+        long delay = ThreadLocalRandom.current().nextLong(base, upper);
+        return Duration.ofMillis(Math.min(maxDelay.toMillis(), delay));
+    }
+
+    static boolean isRetryable(Throwable failure) {
+        if (failure instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+        }
+        return failure instanceof WebClientRequestException
+                || failure instanceof TimeoutException
+                || failure.getCause() instanceof TimeoutException;
+    }
+
+    /**
+     * Parse the Retry-After header of a failed response, either delay-seconds or an HTTP date
+     *
+     * @return The requested delay, or null when the header is absent or invalid
+     */
+    static Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException responseException)) {
+            return null;
+        }
+        String value = responseException.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
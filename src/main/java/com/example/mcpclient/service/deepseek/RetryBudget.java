@@ -0,0 +1,72 @@
+package com.example.mcpclient.service.deepseek;
+
+/**
+ * Caps retries to a fraction of recent traffic so that retries can never amplify an outage.
+ * Requests and retries are counted in one-second buckets over a sliding window; a retry is
+ * allowed while retries stay below {@code ratio * requests}, with a small floor so that
+ * low-traffic periods can still retry.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final int minRetriesPerSecond;
+    private final int windowSeconds;
+    private final long[] requests;
+    private final long[] retries;
+    private final long[] bucketSeconds;
+
+    public RetryBudget(double ratio, int minRetriesPerSecond, int windowSeconds) {
+        this.ratio = ratio;
+        this.minRetriesPerSecond = Math.max(0, minRetriesPerSecond);
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.requests = new long[this.windowSeconds];
+        this.retries = new long[this.windowSeconds];
+        this.bucketSeconds = new long[this.windowSeconds];
+    }
+
+    /**
+     * Record an original (non-retry) request
+     */
+    public synchronized void recordRequest() {
+        requests[bucket(currentSecond())]++;
+    }
+
+    /**
+     * Try to spend budget for one retry
+     *
+     * @return true if the retry may proceed
+     */
+    public synchronized boolean tryAcquireRetry() {
+        long now = currentSecond();
+        long requestCount = 0;
+        long retryCount = 0;
+        for (int i = 0; i < windowSeconds; i++) {
+            if (now - bucketSeconds[i] < windowSeconds) {
+                requestCount += requests[i];
+                retryCount += retries[i];
+            }
+        }
+
+        double allowed = Math.max((double) minRetriesPerSecond * windowSeconds, ratio * requestCount);
+        if (retryCount + 1 > allowed) {
+            return false;
+        }
+        retries[bucket(now)]++;
+        return true;
+    }
+
+    private int bucket(long second) {
+        // Seconds read from nanoTime may be negative
+        int index = Math.floorMod(second, windowSeconds);
+        if (bucketSeconds[index] != second) {
+            bucketSeconds[index] = second;
+            requests[index] = 0;
+            retries[index] = 0;
+        }
+        return index;
+    }
+
+    protected long currentSecond() {
+        return Math.floorDiv(System.nanoTime(), 1_000_000_000L);
+    }
+}
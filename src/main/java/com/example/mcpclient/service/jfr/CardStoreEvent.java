@@ -0,0 +1,29 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an operation on the in-memory message card store.
+ */
+@Name("com.example.mcpclient.CardStore")
+@Label("Card Store Operation")
+@Category({"MCP Client", "Cards"})
+public class CardStoreEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Card ID")
+    public String cardId;
+
+    @Label("Card Type")
+    public String cardType;
+
+    @Label("Serialized Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,31 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering one chat turn, from receiving the message until the response is ready.
+ */
+@Name("com.example.mcpclient.ChatTurn")
+@Label("Chat Turn")
+@Category({"MCP Client", "Chat"})
+@Description("Processing of one chat message, including card detection, prompt building and the DeepSeek call")
+public class ChatTurnEvent extends Event {
+
+    @Label("Session Hash")
+    @Description("Truncated SHA-256 of the session ID, to group the turns of a session without exposing the session cookie")
+    public String sessionHash;
+
+    @Label("Domain")
+    public String domain;
+
+    @Label("Message Length")
+    public int messageLength;
+
+    @Label("Outcome")
+    @Description("success, failed or cancelled")
+    public String outcome;
+}
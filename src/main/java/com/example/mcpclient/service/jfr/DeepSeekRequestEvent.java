@@ -0,0 +1,33 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one DeepSeek chat completion, including limiter queueing and retries.
+ */
+@Name("com.example.mcpclient.DeepSeekRequest")
+@Label("DeepSeek Request")
+@Category({"MCP Client", "DeepSeek"})
+public class DeepSeekRequestEvent extends Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Messages")
+    public int messages;
+
+    @Label("Prompt Tokens")
+    public int promptTokens;
+
+    @Label("Completion Tokens")
+    public int completionTokens;
+
+    @Label("Prompt Cache Hit Tokens")
+    public int promptCacheHitTokens;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,24 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one refresh of the MCP service registry from Nacos.
+ */
+@Name("com.example.mcpclient.DiscoveryRefresh")
+@Label("MCP Discovery Refresh")
+@Category({"MCP Client", "Discovery"})
+public class DiscoveryRefreshEvent extends Event {
+
+    @Label("Services")
+    public int services;
+
+    @Label("Tools")
+    public int tools;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,113 @@
+package com.example.mcpclient.service.jfr;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Actuator endpoint for on-demand JDK Flight Recorder recordings.
+ * Start a bounded recording, reproduce the problem, then stop it to download the .jfr file
+ * and open it in JDK Mission Control. As an actuator endpoint it is only reachable once added to
+ * {@code management.endpoints.web.exposure.include}, and can be kept off the public port with
+ * {@code management.server.port}.
+ */
+@Component
+@Endpoint(id = "jfr")
+@ConditionalOnProperty(name = "admin.jfr.enabled", havingValue = "true")
+@Slf4j
+public class JfrEndpoint {
+
+    private static final int STATUS_CONFLICT = 409;
+
+    private final JfrRecordingService jfrRecordingService;
+
+    public JfrEndpoint(JfrRecordingService jfrRecordingService) {
+        this.jfrRecordingService = jfrRecordingService;
+    }
+
+    /**
+     * Get the state of the current recording
+     */
+    @ReadOperation
+    public Map<String, Object> status() {
+        return jfrRecordingService.status();
+    }
+
+    /**
+     * Start a recording
+     *
+     * @param settings JFR settings, "default" or "profile"
+     * @param durationSeconds Maximum duration of the recording, capped by admin.jfr.max-duration-seconds
+     */
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> start(@Nullable String settings, @Nullable Long durationSeconds) {
+        try {
+            Duration duration = durationSeconds != null ? Duration.ofSeconds(durationSeconds) : null;
+            return new WebEndpointResponse<>(jfrRecordingService.start(settings, duration));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(Map.of("error", e.getMessage()), STATUS_CONFLICT);
+        } catch (Exception e) {
+            log.error("Failed to start JFR recording", e);
+            return new WebEndpointResponse<>(Map.of("error", String.valueOf(e.getMessage())),
+                    WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Stop the recording and download it as a .jfr file
+     */
+    @DeleteOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> stop() {
+        try {
+            return new WebEndpointResponse<>(new TemporaryFileResource(jfrRecordingService.stopAndDump()));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(STATUS_CONFLICT);
+        } catch (Exception e) {
+            log.error("Failed to stop JFR recording", e);
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * A dumped recording, deleted once it has been written to the response
+     */
+    private static final class TemporaryFileResource extends FileSystemResource {
+
+        private final Path file;
+
+        TemporaryFileResource(Path file) {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            };
+        }
+    }
+}
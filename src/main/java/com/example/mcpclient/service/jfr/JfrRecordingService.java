@@ -0,0 +1,141 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages a single on-demand JDK Flight Recorder recording.
+ * Recordings are bounded in duration and size so that a forgotten recording cannot fill the disk;
+ * the application's custom events (chat turns, MCP and DeepSeek calls, discovery and card store)
+ * are recorded together with the JDK events of the selected settings, except those that could leak
+ * credentials from the environment or the command line.
+ */
+@Service
+@Slf4j
+public class JfrRecordingService {
+
+    private static final String RECORDING_NAME = "mcp-client-on-demand";
+
+    // JDK events recording environment variables, system properties, JVM arguments and process command lines,
+    // which may carry credentials such as the DeepSeek API key
+    private static final List<String> SENSITIVE_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty",
+            "jdk.JVMInformation",
+            "jdk.SystemProcess");
+
+    private final String defaultSettings;
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+
+    private Recording recording;
+
+    public JfrRecordingService(
+            @Value("${admin.jfr.settings:profile}") String defaultSettings,
+            @Value("${admin.jfr.max-duration-seconds:300}") long maxDurationSeconds,
+            @Value("${admin.jfr.max-size-mb:100}") long maxSizeMb
+    ) {
+        this.defaultSettings = defaultSettings;
+        this.maxDuration = Duration.ofSeconds(maxDurationSeconds);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * Start a recording.
+     *
+     * @param settings JFR settings name ("default" or "profile"), or null for the configured settings
+     * @param duration Requested duration, capped at the configured maximum; null for the maximum
+     * @return The recording status
+     * @throws IllegalStateException If a recording is already running
+     */
+    public synchronized Map<String, Object> start(String settings, Duration duration) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A JFR recording is already running");
+        }
+        closeRecording();
+
+        Duration recordingDuration = duration == null || duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        Configuration configuration = Configuration.getConfiguration(settings != null ? settings : defaultSettings);
+
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName(RECORDING_NAME);
+        newRecording.setToDisk(true);
+        newRecording.setDuration(recordingDuration);
+        newRecording.setMaxSize(maxSizeBytes);
+        SENSITIVE_EVENTS.forEach(newRecording::disable);
+        newRecording.start();
+        recording = newRecording;
+
+        log.info("Started JFR recording with settings '{}' for at most {}s", configuration.getName(),
+                recordingDuration.toSeconds());
+        return status();
+    }
+
+    /**
+     * Stop the recording, if still running, and dump it to a temporary file.
+     * The caller owns the returned file and must delete it.
+     *
+     * @throws IllegalStateException If no recording was started
+     */
+    public synchronized Path stopAndDump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No JFR recording has been started");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+
+        Path file = Files.createTempFile("mcp-client-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            closeRecording();
+        }
+        log.info("Stopped JFR recording, dumped {} bytes", Files.size(file));
+        return file;
+    }
+
+    /**
+     * Describe the current recording
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        Instant startTime = recording.getStartTime();
+        if (startTime != null) {
+            status.put("startTime", startTime.toString());
+        }
+        status.put("durationSeconds", recording.getDuration() != null ? recording.getDuration().toSeconds() : null);
+        status.put("maxSizeBytes", recording.getMaxSize());
+        status.put("sizeBytes", recording.getSize());
+        return status;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.mcpclient.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one HTTP call to an MCP tool.
+ */
+@Name("com.example.mcpclient.McpToolCall")
+@Label("MCP Tool Call")
+@Category({"MCP Client", "MCP"})
+public class McpToolCallEvent extends Event {
+
+    @Label("Tool")
+    public String tool;
+
+    @Label("Service")
+    public String service;
+
+    @Label("Instance")
+    public String instance;
+
+    @Label("Request Size")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,96 @@
+package com.example.mcpclient.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the global admission queue of chat turns.
+ */
+public class ChatAdmissionLimiterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void admissionQueuesThenRejects() throws Exception {
+        // Waits long enough not to expire during the test, the timeout has its own test
+        ChatAdmissionLimiter admission = new ChatAdmissionLimiter(1, 1, 60_000, meterRegistry);
+        Sinks.One<String> firstTurn = Sinks.one();
+
+        CompletableFuture<String> first = admission.admit(firstTurn.asMono()).toFuture();
+        CompletableFuture<String> queued = admission.admit(Mono.just("second")).toFuture();
+        CompletableFuture<String> overflow = admission.admit(Mono.just("third")).toFuture();
+
+        assertThat(admission.getInFlight()).isEqualTo(1);
+        assertThat(admission.getQueued()).isEqualTo(1);
+        assertThatThrownBy(overflow::join).cause()
+                .isInstanceOfSatisfying(ChatRejectedException.class,
+                        e -> assertThat(e.getReason()).isEqualTo("queue_full"));
+
+        // The queued turn starts as soon as the first one finishes
+        firstTurn.tryEmitValue("first");
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(admission.getInFlight()).isZero();
+    }
+
+    @Test
+    void queuedTurnIsRejectedAfterMaxWait() {
+        ChatAdmissionLimiter admission = new ChatAdmissionLimiter(1, 10, 100, meterRegistry);
+        admission.admit(Mono.never()).subscribe();
+
+        assertThatThrownBy(() -> admission.admit(Mono.just("late")).block(Duration.ofSeconds(1)))
+                .isInstanceOfSatisfying(ChatRejectedException.class, rejected -> {
+                    assertThat(rejected.getReason()).isEqualTo("queue_timeout");
+                    assertThat(rejected.getRetryAfter()).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+                });
+        assertThat(admission.getQueued()).isZero();
+        assertThat(admission.getInFlight()).isEqualTo(1);
+        assertThat(meterRegistry.counter("chat.rejected", "reason", "queue_timeout").count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledQueuedTurnLeavesTheQueueWithoutRunning() throws Exception {
+        ChatAdmissionLimiter admission = new ChatAdmissionLimiter(1, 10, 60_000, meterRegistry);
+        Sinks.One<String> firstTurn = Sinks.one();
+        AtomicBoolean cancelledTurnRan = new AtomicBoolean();
+
+        CompletableFuture<String> first = admission.admit(firstTurn.asMono()).toFuture();
+        Disposable cancelled = admission.admit(Mono.fromRunnable(() -> cancelledTurnRan.set(true))).subscribe();
+        CompletableFuture<String> next = admission.admit(Mono.just("next")).toFuture();
+        assertThat(admission.getQueued()).isEqualTo(2);
+
+        cancelled.dispose();
+        assertThat(admission.getQueued()).isEqualTo(1);
+
+        // The slot goes to the turn behind the cancelled one, and is freed again once it finishes
+        firstTurn.tryEmitValue("first");
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(next.get(1, TimeUnit.SECONDS)).isEqualTo("next");
+        assertThat(cancelledTurnRan).isFalse();
+        assertThat(admission.getQueued()).isZero();
+        assertThat(admission.getInFlight()).isZero();
+    }
+
+    @Test
+    void cancelledAdmittedTurnFreesItsSlot() {
+        ChatAdmissionLimiter admission = new ChatAdmissionLimiter(1, 10, 60_000, meterRegistry);
+
+        Disposable running = admission.admit(Mono.never()).subscribe();
+        assertThat(admission.getInFlight()).isEqualTo(1);
+
+        running.dispose();
+        assertThat(admission.getInFlight()).isZero();
+        assertThat(admission.admit(Mono.just("next")).block(Duration.ofSeconds(1))).isEqualTo("next");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mcpclient.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the time budget of chat turns and the budget requested by callers.
+ */
+public class ChatDeadlineTests {
+
+    private static final Duration BUDGET = Duration.ofSeconds(10);
+
+    @Test
+    void usesTheBudgetWithoutRequestedTimeout() {
+        ChatDeadline deadline = ChatDeadline.after(BUDGET, null);
+
+        assertThat(deadline.remaining()).isBetween(Duration.ofSeconds(9), BUDGET);
+        assertThat(deadline.isExpired()).isFalse();
+    }
+
+    @Test
+    void shortensTheBudgetToTheRequestedTimeout() {
+        ChatDeadline deadline = ChatDeadline.after(BUDGET, 500L);
+
+        assertThat(deadline.remaining()).isLessThanOrEqualTo(Duration.ofMillis(500));
+        assertThat(deadline.boundMillis(5000)).isLessThanOrEqualTo(500);
+        assertThat(ChatDeadline.after(BUDGET, 0L).isExpired()).isTrue();
+    }
+
+    @Test
+    void ignoresLongerOrNegativeRequestedTimeouts() {
+        assertThat(ChatDeadline.after(BUDGET, 60_000L).remaining()).isLessThanOrEqualTo(BUDGET);
+        assertThat(ChatDeadline.after(BUDGET, -1L).remaining()).isGreaterThan(Duration.ofSeconds(9));
+    }
+
+    @Test
+    void bindsToTheCurrentThreadOnlyWhileCalled() throws Exception {
+        ChatDeadline deadline = ChatDeadline.after(BUDGET);
+
+        assertThat(deadline.callBound(ChatDeadline::current)).isSameAs(deadline);
+        assertThat(ChatDeadline.current()).isNull();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mcpclient.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the per-session token buckets of chat turns.
+ */
+public class ChatRateLimiterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ChatRateLimiter rateLimiter(int capacity, int refillPerMinute) {
+        ChatRateLimiter rateLimiter = new ChatRateLimiter(true, capacity, refillPerMinute, 1000, meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "nanoTime", (LongSupplier) now::get);
+        return rateLimiter;
+    }
+
+    @Test
+    void bucketAllowsBurstThenRefills() {
+        ChatRateLimiter rateLimiter = rateLimiter(3, 60);
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire("session:a");
+        }
+
+        assertThatThrownBy(() -> rateLimiter.acquire("session:a"))
+                .isInstanceOfSatisfying(ChatRejectedException.class, rejected -> {
+                    assertThat(rejected.getReason()).isEqualTo("rate_limit");
+                    assertThat(rejected.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+                });
+
+        // Other sessions have their own bucket
+        rateLimiter.acquire("session:b");
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        rateLimiter.acquire("session:a");
+        assertThatThrownBy(() -> rateLimiter.acquire("session:a")).isInstanceOf(ChatRejectedException.class);
+
+        // An idle bucket refills up to its capacity only
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire("session:a");
+        }
+        assertThatThrownBy(() -> rateLimiter.acquire("session:a")).isInstanceOf(ChatRejectedException.class);
+        assertThat(meterRegistry.counter("chat.rejected", "reason", "rate_limit").count()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.mcpclient.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for per-request chat stage timings.
+ */
+public class ChatTimingsTests {
+
+    @Test
+    void sumsRepeatedStagesInFirstRunOrder() {
+        ChatTimings timings = new ChatTimings();
+        timings.record("history_update", TimeUnit.MICROSECONDS.toNanos(1500));
+        timings.record("card_detection", TimeUnit.MILLISECONDS.toNanos(12));
+        timings.record("history_update", TimeUnit.MICROSECONDS.toNanos(500));
+
+        Map<String, Double> millis = timings.toMillis();
+
+        assertThat(millis.keySet()).containsExactly("history_update", "card_detection", ChatTimings.TOTAL);
+        assertThat(millis.get("history_update")).isEqualTo(2.0);
+        assertThat(millis.get("card_detection")).isEqualTo(12.0);
+    }
+
+    @Test
+    void formatsServerTimingHeader() {
+        ChatTimings timings = new ChatTimings();
+        timings.record("prompt_build", TimeUnit.MICROSECONDS.toNanos(1234));
+
+        assertThat(timings.toServerTiming()).matches("prompt_build;dur=1\\.2, total;dur=\\d+\\.\\d");
+    }
+
+    @Test
+    void bindsToTheCurrentThreadOnlyWhileCalled() throws Exception {
+        ChatTimings timings = new ChatTimings();
+
+        assertThat(ChatTimings.current()).isNull();
+        assertThat(timings.callBound(ChatTimings::current)).isSameAs(timings);
+        assertThat(ChatTimings.current()).isNull();
+    }
+}
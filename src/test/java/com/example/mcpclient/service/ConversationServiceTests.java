@@ -0,0 +1,134 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ConversationMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the token budgeted prompt window of the conversation history, and its background compaction.
+ */
+public class ConversationServiceTests {
+
+    private static final String SESSION = "session";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * A summarization request, answered by emitting on its sink
+     */
+    private record Summarization(List<ConversationMessage> turns, Sinks.One<String> summary) {
+    }
+
+    private final List<Summarization> summarizations = new CopyOnWriteArrayList<>();
+
+    private ConversationService service(int tokenBudget, boolean compaction) {
+        ConversationSummarizer summarizer = new ConversationSummarizer() {
+            @Override
+            public Mono<String> summarize(String previousSummary, List<ConversationMessage> turns) {
+                Sinks.One<String> summary = Sinks.one();
+                summarizations.add(new Summarization(turns, summary));
+                return summary.asMono();
+            }
+        };
+
+        ConversationService service = new ConversationService();
+        ReflectionTestUtils.setField(service, "maxHistoryLength", 10);
+        ReflectionTestUtils.setField(service, "historyTokenBudget", tokenBudget);
+        ReflectionTestUtils.setField(service, "compactionEnabled", compaction);
+        ReflectionTestUtils.setField(service, "compactionThresholdTokens", 300);
+        ReflectionTestUtils.setField(service, "compactionKeepRecent", 2);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "conversationSummarizer", summarizer);
+        return service;
+    }
+
+    private static List<String> contents(List<ConversationMessage> messages) {
+        return messages.stream().map(ConversationMessage::getContent).toList();
+    }
+
+    @Test
+    void longMessageOnlyWeighsOnItsOwnTurn() {
+        ConversationService service = service(200, false);
+        String pastedLog = "ERROR java.net.SocketTimeoutException: Read timed out\n".repeat(100);
+
+        service.addUserMessage(SESSION, "我的订单什么时候发货？", null);
+        service.addAssistantMessage(SESSION, "请提供订单号。", null);
+        service.addUserMessage(SESSION, pastedLog, null);
+
+        // The latest message is sent however long it is, and pushes the older turns out of the window
+        assertThat(contents(service.getPromptHistory(SESSION))).containsExactly(pastedLog);
+
+        service.addAssistantMessage(SESSION, "这是超时错误。", null);
+        service.addUserMessage(SESSION, "那我的订单呢？", null);
+
+        assertThat(contents(service.getPromptHistory(SESSION))).containsExactly("这是超时错误。", "那我的订单呢？");
+        assertThat(service.getConversationHistory(SESSION)).hasSize(5);
+    }
+
+    @Test
+    void compactionReplacesOlderTurnsWithSummary() {
+        ConversationService service = service(2000, true);
+        String orderQuery = "查询订单号：OD20230601001，" + "订单详情".repeat(150);
+        service.addUserMessage(SESSION, orderQuery, null);
+        service.addAssistantMessage(SESSION, "订单已发货。", null);
+        assertThat(summarizations).isEmpty();
+
+        // Outgrowing the threshold starts one compaction, which leaves the most recent messages out
+        service.addUserMessage(SESSION, "物流到哪了？", null);
+        service.addAssistantMessage(SESSION, "运输中。", null);
+        awaitUntil(() -> summarizations.size() == 1);
+        assertThat(contents(summarizations.get(0).turns())).containsExactly(orderQuery);
+
+        // Until DeepSeek answers, prompts keep the full history
+        assertThat(contents(service.getPromptHistory(SESSION))).startsWith(orderQuery).hasSize(4);
+
+        summarizations.get(0).summary().tryEmitValue("用户查询了订单OD20230601001。");
+        awaitUntil(() -> "system".equals(service.getPromptHistory(SESSION).get(0).getRole()));
+
+        List<ConversationMessage> window = service.getPromptHistory(SESSION);
+        assertThat(window).extracting(ConversationMessage::getRole)
+                .containsExactly("system", "assistant", "user", "assistant");
+        assertThat(contents(window)).containsExactly("用户查询了订单OD20230601001。", "订单已发货。", "物流到哪了？", "运输中。");
+        assertThat(service.getConversationHistory(SESSION)).hasSize(4);
+        assertThat(summarizations).hasSize(1);
+    }
+
+    @Test
+    void failedCompactionIsRetriedWithNextMessage() {
+        ConversationService service = service(2000, true);
+        service.addUserMessage(SESSION, "订单已发货。".repeat(100), null);
+        service.addAssistantMessage(SESSION, "好的", null);
+        service.addUserMessage(SESSION, "谢谢", null);
+        awaitUntil(() -> summarizations.size() == 1);
+
+        summarizations.get(0).summary().tryEmitError(new IllegalStateException("DeepSeek overloaded"));
+        awaitUntil(() -> meterRegistry.find("chat.conversation.compaction").tag("outcome", "failure").timer() != null);
+        assertThat(service.getPromptHistory(SESSION)).hasSize(3);
+
+        service.addAssistantMessage(SESSION, "不客气", null);
+        awaitUntil(() -> summarizations.size() == 2);
+        assertThat(summarizations.get(1).turns()).hasSize(2);
+        summarizations.get(1).summary().tryEmitValue("用户确认订单已发货。");
+        awaitUntil(() -> "system".equals(service.getPromptHistory(SESSION).get(0).getRole()));
+
+        assertThat(contents(service.getPromptHistory(SESSION))).containsExactly("用户确认订单已发货。", "谢谢", "不客气");
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
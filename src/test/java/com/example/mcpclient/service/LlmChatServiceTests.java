@@ -0,0 +1,203 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ChatRequest;
+import com.example.mcpclient.model.ChatResponse;
+import com.example.mcpclient.model.ConversationMessage;
+import com.example.mcpclient.model.MessageCard;
+import com.example.mcpclient.model.OrderMessageCard;
+import com.example.mcpclient.service.deepseek.DeepSeekChatResponse;
+import com.example.mcpclient.service.deepseek.DeepSeekClient;
+import com.example.mcpclient.service.deepseek.DeepSeekMessage;
+import com.example.mcpclient.service.deepseek.DeepSeekOverloadedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the race between card detection and the speculative DeepSeek call of a chat turn, and for
+ * turns that end without an answer.
+ */
+public class LlmChatServiceTests {
+
+    private static final String SESSION = "session";
+
+    private static final MessageCard CARD = OrderMessageCard.builder().id("card-1").title("订单").build();
+
+    private final DeepSeekClient deepSeekClient = mock(DeepSeekClient.class);
+    private final MessageCardService messageCardService = mock(MessageCardService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConversationService conversationService = new ConversationService();
+    private final LlmChatService service = new LlmChatService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(conversationService, "maxHistoryLength", 10);
+        ReflectionTestUtils.setField(conversationService, "historyTokenBudget", 2000);
+        ReflectionTestUtils.setField(conversationService, "meterRegistry", meterRegistry);
+
+        ToolRetrievalIndex toolRetrievalIndex = mock(ToolRetrievalIndex.class);
+        when(toolRetrievalIndex.catalogFitsBudget()).thenReturn(true);
+
+        ReflectionTestUtils.setField(service, "deepSeekClient", deepSeekClient);
+        ReflectionTestUtils.setField(service, "mcpServiceDiscoveryService", new McpServiceDiscoveryService());
+        ReflectionTestUtils.setField(service, "conversationService", conversationService);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "messageCardService", messageCardService);
+        ReflectionTestUtils.setField(service, "llmResponseCache", mock(LlmResponseCache.class));
+        ReflectionTestUtils.setField(service, "toolRetrievalIndex", toolRetrievalIndex);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "observationRegistry", ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(service, "speculationEnabled", true);
+        ReflectionTestUtils.setField(service, "speculationDelayMs", 20L);
+    }
+
+    private void detectAfter(long delayMs, MessageCard card) {
+        when(messageCardService.detectCardFromMessage(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(delayMs);
+            return card;
+        });
+    }
+
+    private void deepSeekAnswers(Mono<DeepSeekChatResponse> response) {
+        when(deepSeekClient.chatCompletion(anyList())).thenReturn(response);
+    }
+
+    private static DeepSeekChatResponse completion(String content) {
+        DeepSeekChatResponse response = new DeepSeekChatResponse();
+        response.setChoices(List.of(new DeepSeekChatResponse.DeepSeekChatChoice(
+                0, DeepSeekMessage.assistantMessage(content), "stop")));
+        return response;
+    }
+
+    private ChatResponse chat(String message) {
+        ChatRequest request = new ChatRequest();
+        request.setMessage(message);
+        return service.processChatAsync(request, SESSION).block(Duration.ofSeconds(5));
+    }
+
+    private ChatResponse chat(String message, ChatDeadline deadline) {
+        ChatRequest request = new ChatRequest();
+        request.setMessage(message);
+        return service.processChatAsync(request, SESSION)
+                .contextWrite(Context.of(ChatDeadline.CONTEXT_KEY, deadline))
+                .block(Duration.ofSeconds(5));
+    }
+
+    private List<String> history() {
+        return conversationService.getConversationHistory(SESSION).stream()
+                .map(ConversationMessage::getContent)
+                .toList();
+    }
+
+    private double speculations(String outcome) {
+        return meterRegistry.counter("chat.speculative.calls", "outcome", outcome).count();
+    }
+
+    @Test
+    void llmAnswersWhenNoCardIsFound() {
+        detectAfter(100, null);
+        deepSeekAnswers(Mono.just(completion("您好")));
+
+        ChatResponse response = chat("你好");
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getMessage()).isEqualTo("您好");
+        assertThat(history()).containsExactly("你好", "您好");
+        assertThat(speculations("used")).isEqualTo(1);
+    }
+
+    @Test
+    void cardWinsOverFinishedSpeculativeAnswer() {
+        detectAfter(300, CARD);
+        deepSeekAnswers(Mono.just(completion("您好")));
+
+        ChatResponse response = chat("查询订单号：OD20230601001");
+
+        assertThat(response.getMessage()).contains("@cards[card-1,order]");
+        assertThat(history()).hasSize(2).noneMatch("您好"::equals);
+        assertThat(speculations("cancelled")).isEqualTo(1);
+    }
+
+    @Test
+    void cardCancelsSpeculativeCallInFlight() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        detectAfter(200, CARD);
+        deepSeekAnswers(Mono.<DeepSeekChatResponse>never().doOnCancel(() -> cancelled.set(true)));
+
+        ChatResponse response = chat("查询订单号：OD20230601001");
+
+        assertThat(response.getMessage()).contains("@cards[card-1,order]");
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void failedSpeculativeCallWaitsForCard() {
+        detectAfter(300, CARD);
+        deepSeekAnswers(Mono.error(new DeepSeekOverloadedException("DeepSeek concurrency limit reached")));
+
+        ChatResponse response = chat("查询订单号：OD20230601001");
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getMessage()).contains("@cards[card-1,order]");
+    }
+
+    @Test
+    void failedCallFailsTurnWithoutCard() {
+        detectAfter(100, null);
+        deepSeekAnswers(Mono.error(new DeepSeekOverloadedException("DeepSeek concurrency limit reached")));
+
+        ChatResponse response = chat("你好");
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).contains("busy");
+    }
+
+    @Test
+    void turnPastItsDeadlineIsAnsweredAndForgotten() {
+        detectAfter(50, null);
+        deepSeekAnswers(Mono.never());
+
+        ChatResponse response = chat("你好", ChatDeadline.after(Duration.ofMillis(300)));
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).contains("taking longer");
+        assertThat(meterRegistry.counter("chat.deadline.exceeded").count()).isEqualTo(1);
+        assertThat(history()).isEmpty();
+    }
+
+    @Test
+    void supersededTurnIsForgotten() {
+        detectAfter(50, null);
+        when(deepSeekClient.chatCompletion(anyList())).thenAnswer(invocation -> {
+            List<DeepSeekMessage> messages = invocation.getArgument(0);
+            return "第一个问题".equals(messages.get(messages.size() - 1).getContent())
+                    ? Mono.never()
+                    : Mono.just(completion("您好"));
+        });
+
+        ChatRequest first = new ChatRequest();
+        first.setMessage("第一个问题");
+        CompletableFuture<ChatResponse> superseded = service.processChatAsync(first, SESSION).toFuture();
+        ChatResponse response = chat("第二个问题");
+
+        assertThat(response.getMessage()).isEqualTo("您好");
+        assertThat(superseded.join().getMessage()).contains("cancelled");
+        assertThat(history()).containsExactly("第二个问题", "您好");
+    }
+}
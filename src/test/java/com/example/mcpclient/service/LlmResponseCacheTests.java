@@ -0,0 +1,97 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.ChatRequest;
+import com.example.mcpclient.model.ConversationMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the LLM response cache key building and opt-out rules.
+ */
+public class LlmResponseCacheTests {
+
+    private static final String SYSTEM_PROMPT = "You are an AI assistant";
+
+    private SimpleMeterRegistry meterRegistry;
+    private LlmResponseCache cache;
+
+    private static ChatRequest request(String message, Boolean noCache) {
+        ChatRequest request = new ChatRequest();
+        request.setMessage(message);
+        request.setNoCache(noCache);
+        return request;
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new LlmResponseCache(true, 600, 100, "\\d{4,}", meterRegistry);
+    }
+
+    @Test
+    void normalizedVariantsShareAKey() {
+        String key1 = cache.buildKey(SYSTEM_PROMPT, history("怎么查物流"), "怎么查物流");
+        String key2 = cache.buildKey(SYSTEM_PROMPT, history("  怎么查物流？ "), "  怎么查物流？ ");
+        String key3 = cache.buildKey(SYSTEM_PROMPT, history("Hello   World!"), "Hello   World!");
+        String key4 = cache.buildKey(SYSTEM_PROMPT, history("hello world"), "hello world");
+
+        assertThat(key1).isEqualTo(key2);
+        assertThat(key3).isEqualTo(key4);
+        assertThat(key1).isNotEqualTo(key3);
+    }
+
+    @Test
+    void keyDependsOnSystemPromptAndWholeHistory() {
+        List<ConversationMessage> fresh = history("hi");
+        List<ConversationMessage> withContext = history("what is an order", "it is a purchase", "hi");
+        List<ConversationMessage> olderContext = history("old question", "old answer", "what is an order", "it is a purchase", "hi");
+
+        String base = cache.buildKey(SYSTEM_PROMPT, fresh, "hi");
+        assertThat(cache.buildKey(SYSTEM_PROMPT + " v2", fresh, "hi")).isNotEqualTo(base);
+        assertThat(cache.buildKey(SYSTEM_PROMPT, withContext, "hi")).isNotEqualTo(base);
+        // Conversations that only share their latest turns do not share answers
+        assertThat(cache.buildKey(SYSTEM_PROMPT, olderContext, "hi"))
+                .isNotEqualTo(cache.buildKey(SYSTEM_PROMPT, withContext, "hi"));
+    }
+
+    @Test
+    void personalizedAndOptedOutTurnsAreNotCacheable() {
+        assertThat(cache.isCacheable(request("怎么查物流", null), history("怎么查物流"))).isTrue();
+        assertThat(cache.isCacheable(request("查询订单号 OD20230601001", null), history("查询订单号 OD20230601001")))
+                .isFalse();
+        assertThat(cache.isCacheable(request("怎么查物流", true), history("怎么查物流"))).isFalse();
+        // A follow-up to a personalized turn is personalized too
+        assertThat(cache.isCacheable(request("什么时候到", null),
+                history("查询订单号 OD20230601001", "订单已发货。", "什么时候到"))).isFalse();
+
+        LlmResponseCache disabled = new LlmResponseCache(false, 600, 100, "", meterRegistry);
+        assertThat(disabled.isCacheable(request("怎么查物流", null), history("怎么查物流"))).isFalse();
+    }
+
+    @Test
+    void hitsAndMissesAreRecorded() {
+        String key = cache.buildKey(SYSTEM_PROMPT, history("hi"), "hi");
+        assertThat(cache.get(key)).isNull();
+
+        cache.put(key, "Hello!");
+        assertThat(cache.get(key)).isEqualTo("Hello!");
+
+        assertThat(meterRegistry.get("llm.response.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    private static List<ConversationMessage> history(String... contents) {
+        List<ConversationMessage> history = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            history.add(i % 2 == 0
+                    ? ConversationMessage.userMessage(contents[i], null)
+                    : ConversationMessage.assistantMessage(contents[i], null));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.mcpclient.service;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.example.mcpclient.model.McpInstanceState;
+import com.example.mcpclient.model.McpServiceInfo;
+import com.example.mcpclient.model.McpToolInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for passive outlier detection and instance selection of MCP service instances.
+ */
+public class McpOutlierDetectorTests {
+
+    private static final String SERVICE = "tradeCenter-mcp";
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final McpServiceDiscoveryService discoveryService = new McpServiceDiscoveryService();
+
+    private final McpOutlierDetector detector = new McpOutlierDetector(discoveryService, new SimpleMeterRegistry(),
+            true, 5, 0.5, 3.0, 500, 10, 30_000, 300_000, 50);
+
+    private final McpToolInfo tool = new McpToolInfo();
+
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    private void register(String... addresses) {
+        McpServiceInfo service = new McpServiceInfo();
+        service.setServiceName(SERVICE);
+        for (String address : addresses) {
+            Instance instance = new Instance();
+            instance.setIp(address.substring(0, address.indexOf(':')));
+            instance.setPort(Integer.parseInt(address.substring(address.indexOf(':') + 1)));
+            service.getInstances().add(instance);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, McpServiceInfo> services =
+                (Map<String, McpServiceInfo>) ReflectionTestUtils.getField(discoveryService, "mcpServices");
+        services.put(SERVICE, service);
+        tool.setName("getOrderWithLogisticsByOrderNo");
+        tool.setServiceName(SERVICE);
+        advance(Duration.ZERO);
+    }
+
+    private void advance(Duration duration) {
+        now = now.plus(duration);
+        ReflectionTestUtils.setField(detector, "clock", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private void calls(String address, int count, boolean failed, long latencyNanos) {
+        for (int i = 0; i < count; i++) {
+            detector.recordCall(SERVICE, address, failed, latencyNanos);
+        }
+    }
+
+    private Set<String> selected() {
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            selected.add(detector.selectInstance(tool));
+        }
+        return selected;
+    }
+
+    private McpInstanceState state(String address) {
+        return detector.withInstanceStates(discoveryService.getServiceByName(SERVICE)).getInstanceStates().stream()
+                .filter(state -> state.getAddress().equals(address))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void consecutiveFailuresEjectUntilReadmission() {
+        register("10.0.0.1:8080", "10.0.0.2:8080");
+        calls("10.0.0.1:8080", 20, false, FAST);
+        calls("10.0.0.2:8080", 4, true, FAST);
+        assertThat(selected()).containsExactlyInAnyOrder("10.0.0.1:8080", "10.0.0.2:8080");
+
+        calls("10.0.0.2:8080", 1, true, FAST);
+        assertThat(selected()).containsExactly("10.0.0.1:8080");
+        assertThat(state("10.0.0.2:8080").isEjected()).isTrue();
+        assertThat(state("10.0.0.2:8080").getEjectedUntil()).isEqualTo(now.plusSeconds(30));
+
+        advance(Duration.ofSeconds(30));
+        assertThat(selected()).containsExactlyInAnyOrder("10.0.0.1:8080", "10.0.0.2:8080");
+        assertThat(state("10.0.0.2:8080").isEjected()).isFalse();
+    }
+
+    @Test
+    void repeatedEjectionsDoubleTheEjectionTime() {
+        register("10.0.0.1:8080", "10.0.0.2:8080");
+        calls("10.0.0.2:8080", 5, true, FAST);
+        advance(Duration.ofSeconds(30));
+
+        calls("10.0.0.2:8080", 5, true, FAST);
+        assertThat(state("10.0.0.2:8080").getEjectionCount()).isEqualTo(2);
+        assertThat(state("10.0.0.2:8080").getEjectedUntil()).isEqualTo(now.plusSeconds(60));
+    }
+
+    @Test
+    void slowInstanceIsEjectedRelativeToItsPeers() {
+        register("10.0.0.1:8080", "10.0.0.2:8080", "10.0.0.3:8080", "10.0.0.4:8080");
+        calls("10.0.0.1:8080", 10, false, FAST);
+        calls("10.0.0.2:8080", 10, false, FAST);
+        calls("10.0.0.3:8080", 10, false, TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(state("10.0.0.3:8080").isEjected()).isFalse();
+
+        calls("10.0.0.4:8080", 10, false, TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(state("10.0.0.4:8080").isEjected()).isTrue();
+        assertThat(selected()).doesNotContain("10.0.0.4:8080");
+    }
+
+    @Test
+    void neverEjectsMoreThanTheConfiguredShare() {
+        register("10.0.0.1:8080", "10.0.0.2:8080");
+        calls("10.0.0.1:8080", 5, true, FAST);
+        calls("10.0.0.2:8080", 5, true, FAST);
+
+        assertThat(List.of(state("10.0.0.1:8080").isEjected(), state("10.0.0.2:8080").isEjected()))
+                .containsExactlyInAnyOrder(true, false);
+    }
+
+    @Test
+    void soleInstanceStaysSelectable() {
+        register("10.0.0.1:8080");
+        calls("10.0.0.1:8080", 20, true, FAST);
+
+        assertThat(state("10.0.0.1:8080").isEjected()).isFalse();
+        assertThat(selected()).containsExactly("10.0.0.1:8080");
+    }
+
+    @Test
+    void unhealthyInstancesAreSkipped() {
+        register("10.0.0.1:8080", "10.0.0.2:8080");
+        discoveryService.getServiceByName(SERVICE).getInstances().get(0).setHealthy(false);
+
+        assertThat(selected()).containsExactly("10.0.0.2:8080");
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.mcpclient.service;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.example.mcpclient.model.McpServiceInfo;
+import com.example.mcpclient.model.McpToolInfo;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for incremental registry refreshes, and for persisting the registry to the discovery snapshot
+ * and loading it at startup.
+ */
+public class McpServiceDiscoveryServiceTests {
+
+    private static final String SERVICES = """
+            {
+              "tradeCenter-mcp": [
+                {
+                  "instanceId": "10.0.0.2#8080#tradeCenter-mcp",
+                  "ip": "10.0.0.2",
+                  "port": 8080,
+                  "healthy": true,
+                  "enabled": true,
+                  "metadata": {
+                    "mcp-tools-count": "1",
+                    "tool-0-name": "getOrderWithLogisticsByOrderNo",
+                    "tool-0-description": "根据订单号查询订单及物流信息"
+                  }
+                },
+                {
+                  "instanceId": "10.0.0.1#8080#tradeCenter-mcp",
+                  "ip": "10.0.0.1",
+                  "port": 8080,
+                  "healthy": true,
+                  "enabled": true,
+                  "metadata": {
+                    "mcp-tools-count": "1",
+                    "tool-0-name": "getOrderWithLogisticsByOrderNo",
+                    "tool-0-description": "根据订单号查询订单及物流信息"
+                  }
+                }
+              ],
+              "userCenter-mcp": [
+                {
+                  "instanceId": "10.0.1.1#8080#userCenter-mcp",
+                  "ip": "10.0.1.1",
+                  "port": 8080,
+                  "healthy": true,
+                  "enabled": true,
+                  "metadata": {
+                    "mcp-tools-count": "1",
+                    "tool-0-name": "getUserById",
+                    "tool-0-description": "根据用户ID查询用户信息"
+                  }
+                }
+              ],
+              "payCenter-mcp": []
+            }
+            """;
+
+    @TempDir
+    Path dir;
+
+    private McpServiceDiscoveryService service(Path staticFile, Path snapshotFile) {
+        McpServiceDiscoveryService service = new McpServiceDiscoveryService();
+        ReflectionTestUtils.setField(service, "targetDomains", List.of("userCenter", "tradeCenter"));
+        ReflectionTestUtils.setField(service, "staticFile", staticFile == null ? "" : staticFile.toString());
+        ReflectionTestUtils.setField(service, "snapshotFile", snapshotFile.toString());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "observationRegistry", ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+        return service;
+    }
+
+    private McpServiceDiscoveryService discovered(Path snapshot) throws IOException {
+        Path staticFile = Files.writeString(dir.resolve("services.json"), SERVICES);
+        McpServiceDiscoveryService service = service(staticFile, snapshot);
+        service.init();
+        return service;
+    }
+
+    private static void register(McpServiceDiscoveryService service, String json) throws IOException {
+        Map<String, List<Instance>> instances = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(json, new TypeReference<>() {});
+        ReflectionTestUtils.setField(service, "staticInstances", instances);
+    }
+
+    @Test
+    void unchangedServicesAreNotRebuilt() throws IOException {
+        McpServiceDiscoveryService service = discovered(dir.resolve("snapshot.json"));
+        long version = service.getRegistryVersion();
+        McpServiceInfo trade = service.getServiceByName("tradeCenter-mcp");
+        McpToolInfo tool = service.getToolByName("getUserById");
+
+        // Same instances in a different order
+        register(service, SERVICES.replace("10.0.0.2", "10.0.0.x").replace("10.0.0.1", "10.0.0.2")
+                .replace("10.0.0.x", "10.0.0.1"));
+        service.refreshServices();
+
+        assertThat(service.getRegistryVersion()).isEqualTo(version);
+        assertThat(service.getServiceByName("tradeCenter-mcp")).isSameAs(trade);
+        assertThat(service.getToolByName("getUserById")).isSameAs(tool);
+    }
+
+    @Test
+    void changedMetadataRebuildsOnlyThatService() throws IOException {
+        McpServiceDiscoveryService service = discovered(dir.resolve("snapshot.json"));
+        long version = service.getRegistryVersion();
+        McpServiceInfo user = service.getServiceByName("userCenter-mcp");
+
+        register(service, SERVICES.replace("根据订单号查询订单及物流信息", "根据订单号查询订单详情"));
+        service.refreshServices();
+
+        assertThat(service.getRegistryVersion()).isGreaterThan(version);
+        assertThat(service.getServiceByName("userCenter-mcp")).isSameAs(user);
+        assertThat(service.getToolByName("getOrderWithLogisticsByOrderNo").getDescription())
+                .isEqualTo("根据订单号查询订单详情");
+    }
+
+    @Test
+    void vanishedServicesAreRemoved() throws IOException {
+        McpServiceDiscoveryService service = discovered(dir.resolve("snapshot.json"));
+        long version = service.getRegistryVersion();
+
+        register(service, "{\"userCenter-mcp\": " + new ObjectMapper().readTree(SERVICES).get("userCenter-mcp") + "}");
+        service.refreshServices();
+
+        assertThat(service.getRegistryVersion()).isGreaterThan(version);
+        assertThat(service.getServiceByName("tradeCenter-mcp")).isNull();
+        assertThat(service.getToolByName("getOrderWithLogisticsByOrderNo")).isNull();
+        assertThat(service.getAllTools()).extracting(McpToolInfo::getName).containsExactly("getUserById");
+    }
+
+    @Test
+    void snapshotRestoresRegistryOnNextStart() throws IOException {
+        Path snapshot = dir.resolve("snapshot.json");
+        McpServiceDiscoveryService previous = discovered(snapshot);
+        previous.saveSnapshot();
+        assertThat(snapshot).exists();
+
+        McpServiceDiscoveryService restarted = service(null, snapshot);
+        assertThat(restarted.isRegistryReady()).isFalse();
+        restarted.init();
+
+        assertThat(restarted.isRegistryReady()).isTrue();
+        assertThat(restarted.getAllServices()).hasSize(2);
+        McpToolInfo tool = restarted.getToolByName("getOrderWithLogisticsByOrderNo");
+        assertThat(tool.getServiceName()).isEqualTo("tradeCenter-mcp");
+        assertThat(tool.getDescription()).isEqualTo("根据订单号查询订单及物流信息");
+        assertThat(restarted.getServiceByName("tradeCenter-mcp").getInstances())
+                .extracting(instance -> instance.getIp())
+                .containsExactly("10.0.0.1", "10.0.0.2");
+    }
+
+    @Test
+    void unchangedRegistryIsNotRewritten() throws IOException {
+        Path snapshot = dir.resolve("snapshot.json");
+        McpServiceDiscoveryService service = discovered(snapshot);
+        service.saveSnapshot();
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(snapshot, written);
+
+        service.saveSnapshot();
+
+        assertThat(Files.getLastModifiedTime(snapshot)).isEqualTo(written);
+        try (var files = Files.list(dir)) {
+            assertThat(files).hasSize(2);
+        }
+    }
+
+    @Test
+    void unreadableSnapshotLeavesRegistryNotReady() throws IOException {
+        Path snapshot = Files.writeString(dir.resolve("snapshot.json"), "{\"tradeCenter-mcp\": [");
+
+        McpServiceDiscoveryService service = service(null, snapshot);
+        service.init();
+
+        assertThat(service.isRegistryReady()).isFalse();
+        assertThat(service.getAllServices()).isEmpty();
+    }
+}
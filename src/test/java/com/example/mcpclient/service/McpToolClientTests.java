@@ -0,0 +1,101 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpToolInfo;
+import com.example.mcpclient.model.OrderData;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Tests for streaming extraction of the {@code data} field from MCP tool responses, and for MCP calls
+ * made past the deadline of a chat turn.
+ */
+public class McpToolClientTests {
+
+    private final McpToolClient client = new McpToolClient(new ObjectMapper(), new RestTemplateBuilder(),
+            ObservationRegistry.NOOP, null, 1000, 1000);
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void bindsOrderDataAndSkipsUnusedFields() throws IOException {
+        String json = """
+                {"success": true, "meta": {"trace": [1, 2, {"x": "y"}]},
+                 "data": {"id": 7, "orderNo": "OD123", "userId": 42, "status": 2,
+                          "createdAt": "2023-06-01 12:34:56", "amount": 99.5, "address": "北京",
+                          "itemId": 1001, "quantity": 3,
+                          "logistics": {"traces": [{"time": "t1", "desc": "已揽收"}, {"time": "t2", "desc": "运输中"}]}},
+                 "message": "ok"}
+                """;
+
+        OrderData order = client.readDataField(body(json), OrderData.class);
+
+        assertThat(order.getId()).isEqualTo(7L);
+        assertThat(order.getOrderNo()).isEqualTo("OD123");
+        assertThat(order.getUserId()).isEqualTo(42L);
+        assertThat(order.getStatus()).isEqualTo(2);
+        assertThat(order.getCreatedAt().asText()).isEqualTo("2023-06-01 12:34:56");
+        assertThat(order.getAmount()).isEqualTo(99.5);
+        assertThat(order.getAddress()).isEqualTo("北京");
+        assertThat(order.getItemId()).isEqualTo(1001L);
+        assertThat(order.getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void acceptsArrayTimestamps() throws IOException {
+        OrderData order = client.readDataField(
+                body("{\"data\": {\"orderNo\": \"OD1\", \"createdAt\": [2023, 6, 1, 12, 34, 56]}}"), OrderData.class);
+
+        assertThat(order.getOrderNo()).isEqualTo("OD1");
+        assertThat(order.getCreatedAt().isArray()).isTrue();
+    }
+
+    @Test
+    void readsDataSubtreeAsJsonNode() throws IOException {
+        JsonNode data = client.readDataField(
+                body("{\"code\": 0, \"data\": {\"username\": \"alice\", \"phone\": \"13500006789\"}}"), JsonNode.class);
+
+        assertThat(data.path("username").asText()).isEqualTo("alice");
+        assertThat(data.path("phone").asText()).isEqualTo("13500006789");
+    }
+
+    @Test
+    void returnsNullWhenDataIsMissingOrNull() throws IOException {
+        assertThat(client.readDataField(body("{\"success\": false, \"data\": null}"), OrderData.class)).isNull();
+        assertThat(client.readDataField(body("{\"success\": false, \"error\": {\"code\": 404}}"), OrderData.class)).isNull();
+        assertThat(client.readDataField(body("[]"), JsonNode.class)).isNull();
+    }
+
+    @Test
+    void skipsCallsPastTheChatDeadline() {
+        McpOutlierDetector outlierDetector = mock(McpOutlierDetector.class);
+        McpToolClient deadlineClient = new McpToolClient(new ObjectMapper(), new RestTemplateBuilder(),
+                ObservationRegistry.NOOP, outlierDetector, 1000, 1000);
+        McpToolInfo tool = new McpToolInfo();
+        tool.setName("getOrderByOrderNo");
+        tool.setServiceName("order-service");
+
+        assertThatThrownBy(() -> ChatDeadline.after(Duration.ZERO)
+                .callBound(() -> deadlineClient.callToolForData(tool, Map.of(), JsonNode.class)))
+                .isInstanceOf(SocketTimeoutException.class);
+        // No instance was picked, nor charged with the timeout
+        verifyNoInteractions(outlierDetector);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.OrderData;
+import com.example.mcpclient.model.OrderMessageCard;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for order cards that are returned before their user info arrives, and completed afterwards.
+ */
+public class MessageCardServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final CountDownLatch userCenterReleased = new CountDownLatch(1);
+
+    private MessageCardService service(String enrichment) {
+        OrderData orderData = new OrderData();
+        orderData.setOrderNo("OD20230601001");
+        orderData.setUserId(12345L);
+        orderData.setStatus(2);
+        orderData.setAmount(1498.0);
+
+        ObjectNode userData = objectMapper.createObjectNode();
+        userData.put("username", "张三");
+        userData.put("phone", "13812345678");
+
+        OrderDataService orderDataService = new OrderDataService() {
+            @Override
+            public OrderData getOrderDataByOrderNo(String orderNo) {
+                return orderData;
+            }
+        };
+        UserDataService userDataService = new UserDataService() {
+            @Override
+            public JsonNode getUserById(Long userId) {
+                try {
+                    userCenterReleased.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return userData;
+            }
+        };
+
+        MessageCardService service = new MessageCardService();
+        ReflectionTestUtils.setField(service, "orderDataService", orderDataService);
+        ReflectionTestUtils.setField(service, "userDataService", userDataService);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "userEnrichment", enrichment);
+        ReflectionTestUtils.setField(service, "userEnrichmentWaitMs", 50L);
+        ReflectionTestUtils.setField(service, "userEnrichmentTimeoutMs", 5000L);
+        return service;
+    }
+
+    @Test
+    void slowUserCenterDefersEnrichment() throws Exception {
+        MessageCardService service = service("async");
+
+        OrderMessageCard card = service.createOrderCardFromMessage("查询订单号：OD20230601001");
+        service.addCard(card);
+
+        assertThat(card.getUserPending()).isTrue();
+        assertThat(card.getOrderNumber()).isEqualTo("OD20230601001");
+        assertThat(service.getCardById(card.getId())).isSameAs(card);
+
+        var completed = service.awaitCompletedCard(card.getId()).toFuture();
+        userCenterReleased.countDown();
+
+        JsonNode json = objectMapper.readTree(completed.get(5, TimeUnit.SECONDS));
+        assertThat(json.path("userName").asText()).isEqualTo("张三");
+        assertThat(json.path("userPhone").asText()).isEqualTo("138****5678");
+        assertThat(json.path("userPending").isNull()).isTrue();
+
+        OrderMessageCard stored = (OrderMessageCard) service.getCardById(card.getId());
+        assertThat(stored.getUserName()).isEqualTo("张三");
+        assertThat(stored.getUserPending()).isNull();
+    }
+
+    @Test
+    void enrichmentFinishedBeforeSaveIsAppliedOnSave() throws Exception {
+        MessageCardService service = service("async");
+
+        OrderMessageCard card = service.createOrderCardFromMessage("查询订单号：OD20230601001");
+        userCenterReleased.countDown();
+        Thread.sleep(200);
+        service.addCard(card);
+
+        OrderMessageCard stored = (OrderMessageCard) service.getCardById(card.getId());
+        assertThat(stored.getUserName()).isEqualTo("张三");
+        assertThat(service.awaitCompletedCard(card.getId()).block(Duration.ofSeconds(1))).isNotNull();
+    }
+
+    @Test
+    void syncModeWaitsForUserCenter() {
+        MessageCardService service = service("sync");
+        userCenterReleased.countDown();
+
+        OrderMessageCard card = service.createOrderCardFromMessage("查询订单号：OD20230601001");
+
+        assertThat(card.getUserPending()).isNull();
+        assertThat(card.getUserName()).isEqualTo("张三");
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mcpclient.service;
+
+import com.example.mcpclient.model.McpServiceInfo;
+import com.example.mcpclient.model.McpToolInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for BM25 tool retrieval: tokenization, ranking, the prompt token budget and incremental updates.
+ */
+public class ToolRetrievalIndexTests {
+
+    private static final String[][] TOOLS = {
+            {"tradeCenter-mcp", "getOrderWithLogisticsByOrderNo", "根据订单号查询订单及物流信息"},
+            {"tradeCenter-mcp", "createRefundRequest", "Create a refund request for an order item that was returned"},
+            {"userCenter-mcp", "getUserById", "根据用户ID查询用户信息，包括用户名、手机号和地址"},
+            {"userCenter-mcp", "getMemberLevel", "查询会员等级和积分"},
+            {"lgCenter-mcp", "getLogisticsTrack", "根据运单号查询物流轨迹"},
+            {"lgCenter-mcp", "estimateDeliveryTime", "Estimate the delivery time of a shipment based on its route"},
+    };
+
+    private final McpServiceDiscoveryService discoveryService = new McpServiceDiscoveryService();
+
+    private ToolRetrievalIndex index(int maxTools, int tokenBudget) {
+        return new ToolRetrievalIndex(discoveryService, new ObjectMapper(), new SimpleMeterRegistry(),
+                maxTools, tokenBudget);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, McpServiceInfo> services() {
+        return (Map<String, McpServiceInfo>) ReflectionTestUtils.getField(discoveryService, "mcpServices");
+    }
+
+    private McpToolInfo register(String serviceName, String name, String description) {
+        McpToolInfo tool = new McpToolInfo();
+        tool.setServiceName(serviceName);
+        tool.setName(name);
+        tool.setDescription(description);
+        tool.setDomain(serviceName.substring(0, serviceName.indexOf('-')));
+        services().computeIfAbsent(serviceName, key -> {
+            McpServiceInfo service = new McpServiceInfo();
+            service.setServiceName(key);
+            return service;
+        }).getTools().add(tool);
+        registryChanged();
+        return tool;
+    }
+
+    private void registerCatalog() {
+        for (String[] tool : TOOLS) {
+            register(tool[0], tool[1], tool[2]);
+        }
+    }
+
+    private void registryChanged() {
+        ((AtomicLong) ReflectionTestUtils.getField(discoveryService, "registryVersion")).incrementAndGet();
+    }
+
+    private static List<String> names(List<McpToolInfo> tools) {
+        return tools.stream().map(McpToolInfo::getName).toList();
+    }
+
+    @Test
+    void tokenizesCamelCaseAndChineseBigrams() {
+        assertThat(ToolRetrievalIndex.tokenize("getOrderWithLogisticsByOrderNo"))
+                .containsExactly("get", "order", "with", "logistics", "by", "order", "no");
+        assertThat(ToolRetrievalIndex.tokenize("查询物流轨迹, HTTPServer 1 件"))
+                .containsExactly("查询", "询物", "物流", "流轨", "轨迹", "http", "server", "1", "件");
+    }
+
+    @Test
+    void ranksMatchingToolsFirst() {
+        registerCatalog();
+        ToolRetrievalIndex index = index(3, 10_000);
+
+        assertThat(names(index.search("帮我看看这个运单的物流轨迹"))).first().isEqualTo("getLogisticsTrack");
+        assertThat(names(index.search("我的会员积分是多少"))).first().isEqualTo("getMemberLevel");
+        assertThat(names(index.search("I want a refund for my order"))).first().isEqualTo("createRefundRequest");
+        assertThat(index.search("你好")).isEmpty();
+    }
+
+    @Test
+    void selectionStaysWithinBudgetForLargeCatalogs() {
+        for (int i = 0; i < 2000; i++) {
+            String[] template = TOOLS[i % TOOLS.length];
+            register(template[0], template[1] + "V" + i, template[2]);
+        }
+        ToolRetrievalIndex index = index(20, 800);
+
+        List<McpToolInfo> selected = index.search("查询物流轨迹");
+
+        assertThat(index.catalogFitsBudget()).isFalse();
+        assertThat(selected).hasSizeBetween(1, 20);
+        assertThat(selected).allMatch(tool -> tool.getName().startsWith("getLogisticsTrack"));
+        int tokens = selected.stream()
+                .mapToInt(tool -> TokenEstimator.estimate(new ObjectMapper().valueToTree(tool).toString()))
+                .sum();
+        assertThat(tokens).isLessThanOrEqualTo(800);
+    }
+
+    @Test
+    void smallCatalogFitsBudget() {
+        registerCatalog();
+
+        assertThat(index(20, 10_000).catalogFitsBudget()).isTrue();
+        assertThat(index(5, 10_000).catalogFitsBudget()).isFalse();
+        assertThat(index(20, 100).catalogFitsBudget()).isFalse();
+    }
+
+    @Test
+    void followsRegistryChanges() {
+        registerCatalog();
+        ToolRetrievalIndex index = index(3, 10_000);
+        assertThat(names(index.search("查询物流轨迹"))).contains("getLogisticsTrack");
+
+        services().remove("lgCenter-mcp");
+        registryChanged();
+        register("payCenter-mcp", "getPaymentStatus", "查询订单的支付状态");
+
+        assertThat(names(index.search("查询物流轨迹"))).doesNotContain("getLogisticsTrack");
+        assertThat(names(index.search("支付状态"))).containsExactly("getPaymentStatus");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.mcpclient.service.deepseek;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the adaptive concurrency limiter used around DeepSeek calls.
+ */
+public class AdaptiveConcurrencyLimiterTests {
+
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueueSize, long maxWaitMs) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, 1, 100, maxQueueSize, maxWaitMs, 0.5, 500,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void grantsPermitsUpToTheLimitAndQueuesTheRest() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 5, 5000);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.acquire().block();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> third = new AtomicReference<>();
+        Disposable pending = limiter.acquire().subscribe(third::set);
+        assertThat(limiter.getQueued()).isEqualTo(1);
+        assertThat(third.get()).isNull();
+
+        first.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        assertThat(third.get()).isNotNull();
+        assertThat(limiter.getQueued()).isZero();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+
+        second.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        third.get().release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        assertThat(limiter.getInFlight()).isZero();
+        pending.dispose();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0, 5000);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+
+        StepVerifier.create(limiter.acquire())
+                .expectError(DeepSeekOverloadedException.class)
+                .verify(Duration.ofSeconds(1));
+
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+    }
+
+    @Test
+    void rejectsWhenWaitExceedsMaximum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 5, 50);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+
+        StepVerifier.create(limiter.acquire())
+                .expectError(DeepSeekOverloadedException.class)
+                .verify(Duration.ofSeconds(1));
+        assertThat(limiter.getQueued()).isZero();
+
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+    }
+
+    @Test
+    void cancelledWaiterDoesNotLeakASlot() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 5, 5000);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+
+        Disposable pending = limiter.acquire().subscribe();
+        assertThat(limiter.getQueued()).isEqualTo(1);
+        pending.dispose();
+        assertThat(limiter.getQueued()).isZero();
+
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void backsOffOnDropsAndReleasesOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 5, 5000);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void growsWhileLatencyStaysAtBaseline() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 5, 5000);
+
+        for (int round = 0; round < 5; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.acquire().block());
+            }
+            Thread.sleep(5);
+            permits.forEach(permit -> permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS));
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(4);
+    }
+}
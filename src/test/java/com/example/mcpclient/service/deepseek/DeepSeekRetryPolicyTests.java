@@ -0,0 +1,132 @@
+package com.example.mcpclient.service.deepseek;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the DeepSeek retry policy and retry budget.
+ */
+public class DeepSeekRetryPolicyTests {
+
+    private static final long FAR_DEADLINE = Long.MAX_VALUE / 2;
+
+    private static DeepSeekRetryPolicy policy(int maxRetries, double budgetRatio, int budgetMinPerSecond) {
+        return new DeepSeekRetryPolicy(maxRetries, 1, 20, 10_000, budgetRatio, budgetMinPerSecond,
+                new SimpleMeterRegistry());
+    }
+
+    private static WebClientResponseException error(HttpStatus status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return WebClientResponseException.create(status.value(), status.getReasonPhrase(), headers,
+                new byte[0], StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void retriesTransientFailuresUntilSuccess() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(error(HttpStatus.SERVICE_UNAVAILABLE, null))
+                : Mono.just("ok"));
+
+        StepVerifier.create(call.retryWhen(policy(2, 1.0, 10).forCall(System.nanoTime() + FAR_DEADLINE)))
+                .expectNext("ok")
+                .verifyComplete();
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(error(HttpStatus.BAD_REQUEST, null));
+        });
+
+        StepVerifier.create(call.retryWhen(policy(2, 1.0, 10).forCall(System.nanoTime() + FAR_DEADLINE)))
+                .expectError(WebClientResponseException.BadRequest.class)
+                .verify(Duration.ofSeconds(1));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void doesNotRetryPastTheDeadline() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(error(HttpStatus.TOO_MANY_REQUESTS, "5"));
+        });
+
+        StepVerifier.create(call.retryWhen(policy(2, 1.0, 10).forCall(System.nanoTime() + Duration.ofSeconds(1).toNanos())))
+                .expectError(WebClientResponseException.TooManyRequests.class)
+                .verify(Duration.ofSeconds(1));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void parsesRetryAfterHeader() {
+        assertThat(DeepSeekRetryPolicy.retryAfter(error(HttpStatus.TOO_MANY_REQUESTS, "3")))
+                .isEqualTo(Duration.ofSeconds(3));
+        assertThat(DeepSeekRetryPolicy.retryAfter(error(HttpStatus.TOO_MANY_REQUESTS, "Wed, 21 Oct 2015 07:28:00 GMT")))
+                .isEqualTo(Duration.ZERO);
+        assertThat(DeepSeekRetryPolicy.retryAfter(error(HttpStatus.TOO_MANY_REQUESTS, "soon"))).isNull();
+        assertThat(DeepSeekRetryPolicy.retryAfter(error(HttpStatus.TOO_MANY_REQUESTS, null))).isNull();
+    }
+
+    @Test
+    void decorrelatedJitterStaysWithinBounds() {
+        DeepSeekRetryPolicy policy = new DeepSeekRetryPolicy(2, 100, 1000, 10_000, 0.1, 1, new SimpleMeterRegistry());
+        long previous = 100;
+        for (int i = 0; i < 100; i++) {
+            Duration delay = policy.nextDelay(previous);
+            assertThat(delay.toMillis()).isBetween(100L, 1000L);
+            previous = delay.toMillis();
+        }
+    }
+
+    @Test
+    void retryBudgetLimitsRetriesToAFractionOfRequests() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 10);
+        for (int i = 0; i < 20; i++) {
+            budget.recordRequest();
+        }
+
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isFalse();
+    }
+
+    @Test
+    void retryBudgetWorksWithNegativeClock() {
+        AtomicLong second = new AtomicLong(-3);
+        RetryBudget budget = new RetryBudget(0.5, 0, 10) {
+            @Override
+            protected long currentSecond() {
+                return second.get();
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            budget.recordRequest();
+            second.incrementAndGet();
+        }
+
+        // Requests from second -3 to 0 share the window
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isFalse();
+    }
+}